@@ -0,0 +1,134 @@
+package io.github.vrivotti.unifiedcircularprogress.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the hot {@link RingModel} operations.
+ * Run with the gc profiler to get the allocated bytes per operation.
+ *
+ **/
+public class RingModelBenchmark {
+    private static final long FRAME_TIME = 16;
+
+    /**
+     * Time source advanced manually by the benchmarks.
+     */
+    static final class ManualTimeSource implements TimeSource {
+        long time;
+
+        @Override
+        public long now() {
+            return time;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IndeterminateState {
+        final ManualTimeSource timeSource = new ManualTimeSource();
+        RingModel model;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            model = new RingModel(timeSource);
+            model.start();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeterminateState {
+        final ManualTimeSource timeSource = new ManualTimeSource();
+        RingModel model;
+        int step;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            model = new RingModel(timeSource);
+            model.setProgress(0);
+            model.start();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CreateState {
+        final ManualTimeSource timeSource = new ManualTimeSource();
+    }
+
+    @State(Scope.Thread)
+    public static class ReduceState {
+        final RingModel model = new RingModel();
+        float offset;
+    }
+
+    /**
+     * One frame of the indeterminate cycle.
+     */
+    @Benchmark
+    public float indeterminateFrame(IndeterminateState state) {
+        state.timeSource.time += FRAME_TIME;
+        state.model.advance(state.timeSource.time);
+        return state.model.getRingEnd();
+    }
+
+    /**
+     * A progress update arriving every millisecond, much faster than frames.
+     */
+    @Benchmark
+    public float retarget(DeterminateState state) {
+        RingModel model = state.model;
+        state.step = (state.step + 1) % 1000;
+        state.timeSource.time++;
+
+        model.setProgress(state.step / 1000f);
+        model.start();
+        model.advance(state.timeSource.time);
+        return model.getRingEnd();
+    }
+
+    /**
+     * Switching between indeterminate and determinate modes on every frame.
+     */
+    @Benchmark
+    public float modeTransition(DeterminateState state) {
+        RingModel model = state.model;
+        state.step++;
+        state.timeSource.time += FRAME_TIME;
+
+        model.setIndeterminate((state.step & 1) == 0);
+        model.start();
+        model.advance(state.timeSource.time);
+        return model.getRingEnd();
+    }
+
+    /**
+     * Creating the model of a bar which is inflated but never shown.
+     */
+    @Benchmark
+    public RingModel create(CreateState state) {
+        return new RingModel(state.timeSource);
+    }
+
+    /**
+     * Creating the model of a bar inflated in determinate mode.
+     */
+    @Benchmark
+    public RingModel createDeterminate(CreateState state) {
+        RingModel model = new RingModel(state.timeSource);
+        model.setProgress(0.5f);
+        return model;
+    }
+
+    @Benchmark
+    public float reduceAngles(ReduceState state) {
+        RingModel model = state.model;
+        state.offset += 0.37f;
+        if (state.offset > 1000) state.offset = -1000;
+
+        model.setRing(state.offset, state.offset + 1.5f);
+        model.reduceAngles();
+        return model.getRingStart();
+    }
+}
@@ -0,0 +1,471 @@
+package io.github.vrivotti.unifiedcircularprogress.core;
+
+/**
+ * Platform independent state machine of a circular progress ring.
+ * <p>
+ * The ring is described by its start and end positions, in turns. Commands such as
+ * {@link #setProgress(float)} or {@link #setIndeterminate(boolean)} retarget the ring, and
+ * {@link #advance(long)} moves it to a given frame time. Transitions between determinate and
+ * indeterminate modes are smooth and continuous.
+ * </p>
+ *
+ **/
+public final class RingModel {
+    private static final float ANGULAR_EPSILON = 1 / 3600f;
+    private static final int MAX_CATCH_UP_CYCLES = 8;
+    private static final float STEADY_SWEEP = 0.05f;
+    private static final float RATE_SMOOTHING = 0.3f;
+    private static final int MAX_SMOOTHING_CYCLES = 8;
+
+    /**
+     * Default duration of an indeterminate cycle, in milliseconds.
+     */
+    public static final int DEFAULT_DURATION = 1333;
+
+    /**
+     * Number of steady indeterminate cycles after which the ring is back at the same position.
+     */
+    public static final int STEADY_PERIOD_CYCLES = 5;
+
+    private final TimeSource mTimeSource;
+    private final RingTimeline mTimeline = new RingTimeline();
+    private float ringStart = 0;
+    private float ringEnd = 0;
+
+    private boolean mIndeterminate = true;
+    private float mProgress = 0;
+    private int mDuration = DEFAULT_DURATION;
+    private boolean mStarted;
+    private boolean mSteadyCycle;
+    private float mCycleBase;
+
+    private boolean mSmoothing;
+    private long mLastUpdateTime = Long.MIN_VALUE;
+    private float mRate;
+
+    private long mSetupCount;
+    // The first transition is only set up when it is about to play.
+    private boolean mNeedsSetup = true;
+
+    /**
+     * Create a new model in indeterminate mode, using {@link TimeSource#SYSTEM}.
+     */
+    public RingModel() {
+        this(TimeSource.SYSTEM);
+    }
+
+    /**
+     * Create a new model in indeterminate mode.
+     *
+     * @param timeSource the time source used to start animations
+     */
+    public RingModel(TimeSource timeSource) {
+        mTimeSource = timeSource;
+    }
+
+    /**
+     * <p>Gets the current duration of the indeterminate animation.</p>
+     *
+     * @return int the animation duration
+     */
+    public int getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * <p>Change the duration of the indeterminate animation.
+     * This value is also used as a basis for all the animations.
+     * </p>
+     *
+     * @param duration animation duration
+     */
+    public void setDuration(int duration) {
+        this.mDuration = duration;
+    }
+
+    /**
+     * <p>Indicate whether progress smoothing is enabled.</p>
+     *
+     * @return true if progress smoothing is enabled
+     *
+     * @see #setSmoothingEnabled(boolean)
+     */
+    public boolean isSmoothingEnabled() {
+        return mSmoothing;
+    }
+
+    /**
+     * <p>Pace the ring by the rate progress is reported at. The throughput is estimated from
+     * recent updates, and the ring advances to each new value at that rate instead of jumping
+     * to it and sitting still, so sparse updates still give a continuous motion.
+     * The ring never goes past the last reported progress.</p>
+     *
+     * @param enabled true to enable progress smoothing
+     */
+    public void setSmoothingEnabled(boolean enabled) {
+        mSmoothing = enabled;
+        resetRate();
+    }
+
+    /**
+     * <p>Indicate whether this ring is in indeterminate mode.</p>
+     *
+     * @return true if the ring is in indeterminate mode
+     */
+    public boolean isIndeterminate() {
+        return mIndeterminate;
+    }
+
+    /**
+     * <p>Change the indeterminate mode for this ring. In indeterminate
+     * mode, the progress is ignored and the ring plays an infinite
+     * animation instead.</p>
+     *
+     * @param indeterminate true to enable the indeterminate mode
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        if (!indeterminate) {
+            setProgress(mProgress);
+            return;
+        }
+        if (!mIndeterminate) {
+            mIndeterminate = true;
+            resetRate();
+            if (mNeedsSetup) return;
+
+            reduceAngles();
+            if (ringStart < ANGULAR_EPSILON) {
+                setupIndeterminateAnimators();
+            }
+        }
+    }
+
+    /**
+     * <p>Get the ring's current amount of progress.</p>
+     *
+     * @return the current progress, between 0 and 1
+     *
+     * @see #setProgress(float)
+     */
+    public float getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * Sets the current amount of progress to the specified value.
+     * <p>
+     * The ring will animate to the target value.
+     *
+     * @param progress the new amount of progress, between 0 and 1
+     *
+     * @see #setIndeterminate(boolean)
+     * @see #isIndeterminate()
+     * @see #getProgress()
+     */
+    public void setProgress(float progress) {
+        setProgress(progress, mTimeSource.now());
+    }
+
+    /**
+     * Sets the current amount of progress to a value reported at the given time, which
+     * may be earlier than now when updates are applied late. Smoothing estimates the
+     * progress rate from the report times.
+     *
+     * @param progress the new amount of progress, between 0 and 1
+     * @param reportTime the time the progress was reported at, in the time source's base
+     *
+     * @see #setProgress(float)
+     */
+    public void setProgress(float progress, long reportTime) {
+        if (mSmoothing) {
+            updateRate(progress, reportTime);
+        }
+        mProgress = progress;
+        mIndeterminate = false;
+        if (mNeedsSetup) return;
+
+        setupDeterminateAnimators();
+    }
+
+    /**
+     * @return the start position of the ring, in turns
+     */
+    public float getRingStart() {
+        return ringStart;
+    }
+
+    /**
+     * @return the end position of the ring, in turns. Never lower than {@link #getRingStart()}.
+     */
+    public float getRingEnd() {
+        return ringEnd;
+    }
+
+    /**
+     * Starts the animation at the current time of the time source.
+     *
+     * @see #stop()
+     * @see #isRunning()
+     */
+    public void start() {
+        start(mTimeSource.now());
+    }
+
+    /**
+     * Starts the animation at the given frame time.
+     *
+     * @param startTime the frame time the animation starts at, in milliseconds
+     *
+     * @see #start()
+     */
+    public void start(long startTime) {
+        if (mTimeline.isRunning()) return;
+        if (mNeedsSetup) {
+            setupFirstAnimators();
+        }
+
+        mTimeline.start(startTime);
+        mStarted = true;
+    }
+
+    /**
+     * Stops the animation, jumping to the end of the current transition.
+     *
+     * @see #start()
+     * @see #isRunning()
+     */
+    public void stop() {
+        if (mNeedsSetup) {
+            setupFirstAnimators();
+        }
+        mTimeline.end();
+        ringStart = mTimeline.getRingStart();
+        ringEnd = mTimeline.getRingEnd();
+        mStarted = false;
+    }
+
+    /**
+     * Indicates whether the animation is running.
+     *
+     * @return true if the animation is running, false otherwise.
+     *
+     * @see #start()
+     * @see #stop()
+     */
+    public boolean isRunning() {
+        return mTimeline.isRunning();
+    }
+
+    /**
+     * Advances the ring to the given frame time, chaining indeterminate cycles
+     * back to back when the current one is over.
+     *
+     * @param frameTime current frame time, in milliseconds
+     * @return true if the animation is still running
+     */
+    public boolean advance(long frameTime) {
+        if (!mTimeline.isRunning()) {
+            return false;
+        }
+
+        int cycles = 0;
+        while (!mTimeline.advance(frameTime) && mIndeterminate && mStarted) {
+            long endTime = mTimeline.getEndTime();
+            ringStart = mTimeline.getRingStart();
+            ringEnd = mTimeline.getRingEnd();
+            setupIndeterminateAnimators();
+
+            // Steady cycles repeat identically, skip whole periods when far behind.
+            long period = (long)STEADY_PERIOD_CYCLES * mDuration;
+            if (mSteadyCycle && period > 0 && frameTime - endTime >= period) {
+                endTime += (frameTime - endTime) / period * period;
+            }
+
+            if (++cycles < MAX_CATCH_UP_CYCLES) {
+                mTimeline.start(endTime);
+            } else {
+                // Too far behind, restart from the current frame.
+                mTimeline.start(frameTime);
+                break;
+            }
+        }
+        ringStart = mTimeline.getRingStart();
+        ringEnd = mTimeline.getRingEnd();
+        return mTimeline.isRunning();
+    }
+
+    /**
+     * Indicates whether the ring is playing a steady indeterminate cycle, i.e. one starting at
+     * {@link #getCycleBase()} with the shortest arc. Steady cycles follow each other, each one
+     * starting a fifth of a turn after the previous one.
+     *
+     * @return true if the current cycle is steady
+     */
+    public boolean isSteadyCycle() {
+        return mSteadyCycle && mIndeterminate && mTimeline.isRunning();
+    }
+
+    /**
+     * @return the time the current animation segment started at, in milliseconds
+     */
+    public long getCycleStartTime() {
+        return mTimeline.getStartTime();
+    }
+
+    /**
+     * @return the ring start position at the beginning of the current steady cycle, in turns
+     *
+     * @see #isSteadyCycle()
+     */
+    public float getCycleBase() {
+        return mCycleBase;
+    }
+
+    /**
+     * Updates the throughput estimate with a new progress value.
+     */
+    private void updateRate(float progress, long now) {
+        if (mIndeterminate || progress < mProgress) {
+            // Not a continuation of the current progression.
+            mRate = 0;
+        } else if (mLastUpdateTime != Long.MIN_VALUE && now > mLastUpdateTime) {
+            final float rate = (progress - mProgress) / (now - mLastUpdateTime);
+            mRate = mRate > 0 ? mRate + RATE_SMOOTHING * (rate - mRate) : rate;
+        }
+        mLastUpdateTime = now;
+    }
+
+    private void resetRate() {
+        mLastUpdateTime = Long.MIN_VALUE;
+        mRate = 0;
+    }
+
+    /**
+     * @return the duration of a determinate transition covering the given distance
+     */
+    private long getDeterminateDuration(float distance) {
+        long duration = (long)(mDuration * distance);
+        if (mSmoothing && mRate > 0) {
+            // As long as it takes at the estimated rate, to reach the target when the next
+            // update is expected.
+            final long smoothed = Math.min((long)(distance / mRate),
+                    (long)MAX_SMOOTHING_CYCLES * mDuration);
+            duration = Math.max(duration, smoothed);
+        }
+        return duration;
+    }
+
+    private void setupDeterminateAnimators() {
+        reduceAngles();
+        mSteadyCycle = false;
+
+        if (ringStart < ANGULAR_EPSILON && ringEnd <= mProgress) {
+            setupAnimators(getDeterminateDuration(mProgress - ringEnd));
+            mTimeline.startKeyframes()
+                    .from(ringStart)
+                    .to(1.0f, 0.0f);
+            mTimeline.endKeyframes()
+                    .from(ringEnd)
+                    .to(1.0f, mProgress);
+        } else {
+            float next = (float)Math.ceil(ringEnd);
+            float timeToReset = next - ringStart;
+            float timeFraction = timeToReset / (timeToReset + mProgress);
+
+            if (timeFraction > 0.99f) timeFraction = 0.99f;
+
+            setupAnimators((long)(mDuration * (timeToReset + mProgress)));
+            mTimeline.startKeyframes()
+                    .from(ringStart)
+                    .to(timeFraction, next)
+                    .to(1.0f, next);
+            mTimeline.endKeyframes()
+                    .from(ringEnd)
+                    .to(timeFraction, next)
+                    .to(1.0f, next + mProgress);
+        }
+    }
+
+    private void setupIndeterminateAnimators() {
+        reduceAngles();
+
+        if (ringEnd - ringStart <= 0.5f) {
+            float base = ringStart < ANGULAR_EPSILON ? 0 : ringStart;
+            mSteadyCycle = Math.abs(ringEnd - ringStart - STEADY_SWEEP) < ANGULAR_EPSILON;
+            mCycleBase = base;
+
+            setupAnimators(mDuration);
+            mTimeline.startKeyframes()
+                    .from(ringStart)
+                    .to(0.5f, base + 0.2f)
+                    .to(0.7f, base + 0.8f)
+                    .to(1.0f, base + 1.2f);
+            mTimeline.endKeyframes()
+                    .from(ringEnd)
+                    .to(0.2f, base + 0.65f)
+                    .to(0.5f, base + 1.05f)
+                    .to(1.0f, base + 1.25f);
+        } else {
+            float next = (float)Math.ceil(ringEnd);
+            float timeToReset = next - ringStart;
+            mSteadyCycle = false;
+
+            setupAnimators((long)(mDuration * timeToReset));
+            mTimeline.startKeyframes()
+                    .from(ringStart)
+                    .to(1.0f, next);
+            mTimeline.endKeyframes()
+                    .from(ringEnd)
+                    .to(1.0f, next + 0.05f);
+        }
+    }
+
+    private void setupFirstAnimators() {
+        if (mIndeterminate) {
+            setupIndeterminateAnimators();
+        } else {
+            setupDeterminateAnimators();
+        }
+    }
+
+    private void setupAnimators(long duration) {
+        mTimeline.setup(duration);
+        mSetupCount++;
+        mNeedsSetup = false;
+    }
+
+    /**
+     * @return the number of times the animation has been rebuilt, either for a retarget, a mode
+     * transition or a new indeterminate cycle
+     */
+    public long getSetupCount() {
+        return mSetupCount;
+    }
+
+    /**
+     * Places the ring without animating, for benchmarks.
+     */
+    void setRing(float start, float end) {
+        ringStart = start;
+        ringEnd = end;
+    }
+
+    /**
+     * Normalises the ring so that its start lies in [0, 1) and its length in [0, 1].
+     */
+    void reduceAngles() {
+        if (ringEnd < ringStart) {
+            ringEnd = ringStart;
+        }
+
+        if (ringEnd > ringStart + 1) {
+            ringEnd = ringStart + 1;
+        }
+
+        if (ringStart >= 1 || ringStart < 0) {
+            double f = Math.floor(ringStart);
+            ringStart = (float)(ringStart - f);
+            ringEnd = (float)(ringEnd - f);
+        }
+    }
+}
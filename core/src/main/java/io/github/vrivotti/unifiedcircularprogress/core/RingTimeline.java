@@ -0,0 +1,163 @@
+package io.github.vrivotti.unifiedcircularprogress.core;
+
+/**
+ * Keyframe timeline driving the ring start and ring end positions.
+ * Keyframes are stored in preallocated arrays and evaluated linearly from a frame timestamp,
+ * so retargeting and cycling the timeline never allocates.
+ *
+ **/
+final class RingTimeline {
+    private static final int MAX_KEYFRAMES = 4;
+
+    private final Keyframes mStartKeyframes = new Keyframes();
+    private final Keyframes mEndKeyframes = new Keyframes();
+
+    private long mDuration;
+    private long mStartTime;
+    private boolean mRunning;
+
+    private float mRingStart;
+    private float mRingEnd;
+
+    /**
+     * Cancels the running segment and prepares a new one with the given duration.
+     * Keyframes have to be filled through {@link #startKeyframes()} and {@link #endKeyframes()}.
+     *
+     * @param duration segment duration in milliseconds
+     */
+    void setup(long duration) {
+        mRunning = false;
+        mDuration = duration;
+        mStartKeyframes.clear();
+        mEndKeyframes.clear();
+    }
+
+    Keyframes startKeyframes() {
+        return mStartKeyframes;
+    }
+
+    Keyframes endKeyframes() {
+        return mEndKeyframes;
+    }
+
+    /**
+     * Starts playing the current segment from its first keyframe.
+     *
+     * @param startTime the frame time the segment starts at, in milliseconds
+     */
+    void start(long startTime) {
+        mStartTime = startTime;
+        mRunning = true;
+        evaluate(0);
+    }
+
+    /**
+     * Stops the current segment, jumping to its last keyframe.
+     */
+    void end() {
+        mRunning = false;
+        evaluate(1);
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * @return the frame time the current segment starts at, in milliseconds
+     */
+    long getStartTime() {
+        return mStartTime;
+    }
+
+    /**
+     * @return the frame time the current segment ends at, in milliseconds
+     */
+    long getEndTime() {
+        return mStartTime + mDuration;
+    }
+
+    /**
+     * Evaluates the running segment at the given frame time.
+     *
+     * @param frameTime current frame time, in milliseconds
+     * @return true if the segment is still running, false if it reached its end
+     */
+    boolean advance(long frameTime) {
+        if (!mRunning) {
+            return false;
+        }
+
+        long elapsed = frameTime - mStartTime;
+        if (mDuration <= 0 || elapsed >= mDuration) {
+            end();
+            return false;
+        }
+
+        evaluate(elapsed > 0 ? elapsed / (float)mDuration : 0);
+        return true;
+    }
+
+    float getRingStart() {
+        return mRingStart;
+    }
+
+    float getRingEnd() {
+        return mRingEnd;
+    }
+
+    private void evaluate(float fraction) {
+        mRingStart = mStartKeyframes.getValue(fraction);
+        mRingEnd = mEndKeyframes.getValue(fraction);
+    }
+
+    /**
+     * A fixed-capacity set of float keyframes, linearly interpolated.
+     */
+    static final class Keyframes {
+        private final float[] mFractions = new float[MAX_KEYFRAMES];
+        private final float[] mValues = new float[MAX_KEYFRAMES];
+        private int mCount;
+
+        void clear() {
+            mCount = 0;
+        }
+
+        /**
+         * Sets the first keyframe, at fraction 0.
+         */
+        Keyframes from(float value) {
+            mCount = 0;
+            return to(0f, value);
+        }
+
+        /**
+         * Appends a keyframe. Fractions have to be added in increasing order.
+         */
+        Keyframes to(float fraction, float value) {
+            mFractions[mCount] = fraction;
+            mValues[mCount] = value;
+            mCount++;
+            return this;
+        }
+
+        float getValue(float fraction) {
+            if (mCount == 0) {
+                return 0;
+            }
+            if (fraction <= mFractions[0]) {
+                return mValues[0];
+            }
+
+            for (int i = 1; i < mCount; i++) {
+                float next = mFractions[i];
+                if (fraction < next) {
+                    float prev = mFractions[i - 1];
+                    float intervalFraction = (fraction - prev) / (next - prev);
+                    return mValues[i - 1] + intervalFraction * (mValues[i] - mValues[i - 1]);
+                }
+            }
+            return mValues[mCount - 1];
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.vrivotti.unifiedcircularprogress.core;
+
+/**
+ * Source of monotonic time used by {@link RingModel} to start its animations.
+ *
+ **/
+public interface TimeSource {
+    /**
+     * Time source backed by {@link System#nanoTime()}.
+     */
+    TimeSource SYSTEM = () -> System.nanoTime() / 1000000;
+
+    /**
+     * @return the current time, in milliseconds
+     */
+    long now();
+}
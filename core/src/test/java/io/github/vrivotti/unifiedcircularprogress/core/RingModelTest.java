@@ -0,0 +1,229 @@
+package io.github.vrivotti.unifiedcircularprogress.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the ring model against the animator curves of the original drawable, driven
+ * by explicit frame times.
+ *
+ **/
+public class RingModelTest {
+    private static final float DELTA = 1e-4f;
+    // A round duration, so that keyframes fall on whole milliseconds.
+    private static final int DURATION = 1000;
+    private static final long FRAME_TIME = 16;
+
+    private long mTime;
+    private RingModel mModel;
+
+    @Before
+    public void setUp() {
+        mTime = 0;
+        mModel = new RingModel(() -> mTime);
+        mModel.setDuration(DURATION);
+    }
+
+    private void assertRing(float start, float end) {
+        assertEquals("ring start", start, mModel.getRingStart(), DELTA);
+        assertEquals("ring end", end, mModel.getRingEnd(), DELTA);
+    }
+
+    private void advanceTo(long time) {
+        mTime = time;
+        mModel.advance(time);
+    }
+
+    @Test
+    public void indeterminateCycleMatchesKeyframes() {
+        mModel.start(0);
+        assertRing(0, 0);
+
+        // Start keyframes: (0.5, 0.2) (0.7, 0.8) (1, 1.2), end keyframes: (0.2, 0.65) (0.5, 1.05) (1, 1.25)
+        advanceTo(DURATION / 5);
+        assertRing(0.2f * 0.2f / 0.5f, 0.65f);
+        advanceTo(DURATION / 2);
+        assertRing(0.2f, 1.05f);
+        advanceTo(DURATION * 6 / 10);
+        assertRing(0.5f, 1.05f + 0.2f * 0.1f / 0.5f);
+        advanceTo(DURATION * 7 / 10);
+        assertRing(0.8f, 1.05f + 0.2f * 0.2f / 0.5f);
+    }
+
+    @Test
+    public void determinateFromRestMatchesKeyframes() {
+        mModel.setProgress(0.5f);
+        mModel.start(0);
+
+        final long duration = (long)(DURATION * 0.5f);
+        advanceTo(duration / 2);
+        assertRing(0, 0.25f);
+        advanceTo(duration);
+        assertRing(0, 0.5f);
+        assertFalse(mModel.isRunning());
+    }
+
+    @Test
+    public void firstTransitionIsSetUpWhenStarted() {
+        mModel.setProgress(0.3f);
+        mModel.setIndeterminate(false);
+        mModel.setProgress(0.5f);
+        assertEquals(0, mModel.getSetupCount());
+
+        mModel.start(0);
+        assertEquals(1, mModel.getSetupCount());
+        advanceTo((long)(DURATION * 0.5f));
+        assertRing(0, 0.5f);
+    }
+
+    @Test
+    public void determinateAfterWrapMatchesKeyframes() {
+        mModel.setRing(0.3f, 0.5f);
+        mModel.setProgress(0.4f);
+        mModel.start(0);
+
+        // The ring first closes at the next full turn, then grows to the progress.
+        final float timeToReset = 1 - 0.3f;
+        final float timeFraction = timeToReset / (timeToReset + 0.4f);
+        final long duration = (long)(DURATION * (timeToReset + 0.4f));
+
+        advanceTo((long)(duration * timeFraction / 2));
+        assertRing(0.3f + timeToReset / 2, 0.5f + 0.25f);
+        advanceTo(duration);
+        assertRing(1, 1.4f);
+    }
+
+    @Test
+    public void indeterminateFromLongArcClosesFirst() {
+        mModel.setProgress(0.7f);
+        mModel.stop();
+        mModel.setIndeterminate(true);
+        mModel.start(0);
+
+        // The arc is longer than half a turn: the start catches up with the next full turn,
+        // leaving the steady sweep.
+        advanceTo(DURATION / 2);
+        assertRing(0.5f, 0.7f + 0.35f / 2);
+        assertFalse(mModel.isSteadyCycle());
+        advanceTo(DURATION);
+        assertRing(0, 0.05f);
+        assertTrue(mModel.isSteadyCycle());
+    }
+
+    @Test
+    public void cyclesChainBackToBack() {
+        mModel.start(0);
+        advanceTo(DURATION);
+        assertEquals(DURATION, mModel.getCycleStartTime());
+        assertRing(0.2f, 0.25f);
+        assertTrue(mModel.isSteadyCycle());
+
+        // The second cycle starts where the first one ended, a fifth of a turn later.
+        advanceTo(DURATION + DURATION / 2);
+        assertRing(0.4f, 1.25f);
+        assertEquals(0.2f, mModel.getCycleBase(), DELTA);
+    }
+
+    @Test
+    public void lateFrameCatchesUpWithoutDrifting() {
+        final RingModel stepped = new RingModel(() -> mTime);
+        stepped.setDuration(DURATION);
+        stepped.start(0);
+        mModel.start(0);
+
+        final long frameTime = 40 * DURATION + 123;
+        for (long time = FRAME_TIME; time < frameTime; time += FRAME_TIME) {
+            stepped.advance(time);
+        }
+        stepped.advance(frameTime);
+        advanceTo(frameTime);
+
+        assertEquals(40 * DURATION, mModel.getCycleStartTime());
+        assertEquals(stepped.getCycleStartTime(), mModel.getCycleStartTime());
+        assertEquals(stepped.getRingStart(), mModel.getRingStart(), 1e-3f);
+        assertEquals(stepped.getRingEnd(), mModel.getRingEnd(), 1e-3f);
+    }
+
+    @Test
+    public void catchUpSkipsWholePeriods() {
+        mModel.start(0);
+        final long setupCount = mModel.getSetupCount();
+
+        advanceTo(1000L * DURATION + 10);
+
+        // Far less rebuilds than elapsed cycles, and still on the same timeline.
+        assertTrue(mModel.getSetupCount() - setupCount <= RingModel.STEADY_PERIOD_CYCLES + 1);
+        assertEquals(1000L * DURATION, mModel.getCycleStartTime());
+        assertRing(0.0f + 10f / DURATION * 0.2f / 0.5f, 0.05f + 10f / DURATION * 0.6f / 0.2f);
+    }
+
+    @Test
+    public void reduceAnglesNormalisesTheRing() {
+        mModel.setRing(2.3f, 2.5f);
+        mModel.reduceAngles();
+        assertRing(0.3f, 0.5f);
+
+        mModel.setRing(-0.7f, -0.2f);
+        mModel.reduceAngles();
+        assertRing(0.3f, 0.8f);
+
+        mModel.setRing(0.5f, 0.2f);
+        mModel.reduceAngles();
+        assertRing(0.5f, 0.5f);
+
+        mModel.setRing(0.1f, 1.6f);
+        mModel.reduceAngles();
+        assertRing(0.1f, 1.1f);
+    }
+
+    @Test
+    public void smoothingRateFollowsReportTimes() {
+        final RingModel late = new RingModel(() -> mTime);
+        late.setDuration(DURATION);
+        late.setSmoothingEnabled(true);
+        mModel.setSmoothingEnabled(true);
+
+        // The same two reports, applied when they come in, or both at a late frame.
+        mModel.setProgress(0.1f, 0);
+        late.setProgress(0.1f, 0);
+        mModel.setProgress(0.2f, 100);
+        mTime = 300;
+        late.setProgress(0.2f);
+        mModel.start(300);
+        late.start(300);
+
+        // A tenth of a turn in 100ms, the same as the base duration: no slower transition.
+        advanceTo(300 + DURATION / 5);
+        late.advance(300 + DURATION / 5);
+        assertRing(0, 0.2f);
+        assertTrue(late.getRingEnd() < 0.2f - DELTA);
+    }
+
+    @Test
+    public void smoothingNeverOvershoots() {
+        mModel.setSmoothingEnabled(true);
+
+        float progress = 0;
+        float lastEnd = 0;
+        for (long time = 0; time < 20000; time += FRAME_TIME) {
+            // Irregular updates, some of them bursts, some of them late.
+            if (time % 480 == 0 || time % 1296 == 0) {
+                progress = Math.min(1, progress + (time % 1296 == 0 ? 0.07f : 0.02f));
+                mTime = time;
+                mModel.setProgress(progress);
+                mModel.start(time);
+            }
+            advanceTo(time);
+
+            assertEquals(0, mModel.getRingStart(), DELTA);
+            assertTrue("overshoot at " + time, mModel.getRingEnd() <= progress + DELTA);
+            assertTrue("backwards at " + time, mModel.getRingEnd() >= lastEnd - DELTA);
+            lastEnd = mModel.getRingEnd();
+        }
+        assertEquals(1, mModel.getRingEnd(), DELTA);
+    }
+}
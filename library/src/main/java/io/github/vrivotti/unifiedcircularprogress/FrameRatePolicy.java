@@ -0,0 +1,95 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.PowerManager;
+import android.provider.Settings;
+
+/**
+ * Reads the system settings the frame rate of progress animations depends on.
+ * <p>
+ * The battery saver state is read once per process, then kept up to date by a single
+ * receiver. Every change bumps a generation, which running drawables check on each frame.
+ * </p>
+ *
+ **/
+final class FrameRatePolicy {
+    private static boolean sPowerSaveReceiverRegistered;
+    private static volatile boolean sPowerSave;
+    private static volatile int sPowerSaveGeneration;
+
+    private FrameRatePolicy() {
+    }
+
+    /**
+     * @return the animator duration scale set in developer options, 0 if animations are disabled
+     */
+    @SuppressWarnings("deprecation")
+    static float getDurationScale(Context context) {
+        final ContentResolver resolver = context.getContentResolver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return Settings.Global.getFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+        } else {
+            return Settings.System.getFloat(resolver, Settings.System.ANIMATOR_DURATION_SCALE, 1f);
+        }
+    }
+
+    /**
+     * Reads the battery saver state on the first call, and registers the process-wide receiver
+     * keeping it up to date. Later calls return the cached state.
+     *
+     * @return true if battery saver is on
+     */
+    static boolean isPowerSaveMode(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+
+        synchronized (FrameRatePolicy.class) {
+            if (!sPowerSaveReceiverRegistered) {
+                Context appContext = context.getApplicationContext();
+                if (appContext == null) {
+                    appContext = context;
+                }
+                appContext.registerReceiver(new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        readPowerSaveMode(context);
+                    }
+                }, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+                readPowerSaveMode(appContext);
+                sPowerSaveReceiverRegistered = true;
+            }
+        }
+        return sPowerSave;
+    }
+
+    /**
+     * @return the cached battery saver state, false until
+     * {@link #isPowerSaveMode(Context)} has been called once
+     */
+    static boolean isPowerSaveMode() {
+        return sPowerSave;
+    }
+
+    /**
+     * @return a counter incremented every time the battery saver state changes
+     */
+    static int getPowerSaveGeneration() {
+        return sPowerSaveGeneration;
+    }
+
+    @SuppressWarnings("NewApi")
+    private static synchronized void readPowerSaveMode(Context context) {
+        final PowerManager powerManager = (PowerManager)context.getSystemService(Context.POWER_SERVICE);
+        final boolean powerSave = powerManager != null && powerManager.isPowerSaveMode();
+        if (sPowerSave != powerSave) {
+            sPowerSave = powerSave;
+            sPowerSaveGeneration++;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+import androidx.core.view.ViewCompat;
+
+/**
+ * Combines the progress of many subtasks, updated from any number of threads, into a
+ * single progress bar.
+ * <p>
+ * Workers never lock: completed amounts go to striped counters, one stripe per thread
+ * modulo the stripe count, so concurrent workers rarely touch the same counter. The combined
+ * progress is computed on the UI thread and published to the bar at most once per frame.
+ * While the total of any subtask is unknown, the bar is indeterminate.
+ * </p>
+ * <pre>
+ * ProgressAggregator aggregator = new ProgressAggregator(progressBar);
+ * ProgressAggregator.Subtask chunk = aggregator.addSubtask(chunkSize);
+ * // On a worker thread
+ * chunk.add(bytesRead);
+ * </pre>
+ *
+ **/
+public final class ProgressAggregator {
+    private static final int STRIPES = 16;
+    // Counters are spread over cache lines, so that stripes do not share one.
+    private static final int STRIPE_SPACING = 8;
+
+    private final UnifiedCircularProgressBar mBar;
+    private final AtomicLongArray mDone = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicInteger mUnknownTotals = new AtomicInteger();
+    private final AtomicBoolean mPublishScheduled = new AtomicBoolean();
+    private final Runnable mPublishRunnable = this::publish;
+
+    /**
+     * A part of the work, with its own total. Its methods can be called from any thread.
+     */
+    public final class Subtask {
+        private final AtomicLong mSubtaskTotal;
+
+        private Subtask(long total) {
+            mSubtaskTotal = new AtomicLong(total);
+        }
+
+        /**
+         * Adds to the completed amount of this subtask.
+         *
+         * @param amount the newly completed amount, in the units of the total
+         */
+        public void add(long amount) {
+            final int stripe = (int)Thread.currentThread().getId() & (STRIPES - 1);
+            mDone.addAndGet(stripe * STRIPE_SPACING, amount);
+            schedulePublish();
+        }
+
+        /**
+         * Sets the total of this subtask, e.g. once its size is known.
+         *
+         * @param total the total amount of work, or a negative value if unknown
+         */
+        public void setTotal(long total) {
+            if (total < 0) total = -1;
+
+            final long previous = mSubtaskTotal.getAndSet(total);
+            if (previous == total) return;
+
+            if (previous < 0) {
+                mUnknownTotals.decrementAndGet();
+            } else {
+                mTotal.addAndGet(-previous);
+            }
+            if (total < 0) {
+                mUnknownTotals.incrementAndGet();
+            } else {
+                mTotal.addAndGet(total);
+            }
+            schedulePublish();
+        }
+
+        /**
+         * @return the total of this subtask, or -1 if unknown
+         */
+        public long getTotal() {
+            return mSubtaskTotal.get();
+        }
+    }
+
+    /**
+     * Creates an aggregator publishing to the given progress bar.
+     *
+     * @param bar the progress bar showing the combined progress
+     */
+    public ProgressAggregator(@NonNull UnifiedCircularProgressBar bar) {
+        mBar = bar;
+    }
+
+    /**
+     * Adds a subtask. Can be called from any thread.
+     *
+     * @param total the total amount of work of the subtask, or a negative value if unknown
+     * @return the subtask, to report its progress to
+     */
+    @NonNull
+    public Subtask addSubtask(long total) {
+        if (total < 0) total = -1;
+
+        // Counted once, with its initial total, so that the aggregate never goes through
+        // an unknown total it does not have.
+        final Subtask subtask = new Subtask(total);
+        if (total < 0) {
+            mUnknownTotals.incrementAndGet();
+        } else {
+            mTotal.addAndGet(total);
+        }
+        schedulePublish();
+        return subtask;
+    }
+
+    /**
+     * @return the completed amount of all the subtasks. The sum is not atomic, concurrent
+     * updates may or may not be part of it.
+     */
+    public long getDone() {
+        long done = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            done += mDone.get(i * STRIPE_SPACING);
+        }
+        return done;
+    }
+
+    /**
+     * @return the total amount of work of the subtasks whose total is known
+     */
+    public long getTotal() {
+        return mTotal.get();
+    }
+
+    /**
+     * @return true if the total of any subtask is unknown
+     */
+    public boolean isIndeterminate() {
+        return mUnknownTotals.get() > 0;
+    }
+
+    private void schedulePublish() {
+        if (mPublishScheduled.compareAndSet(false, true)) {
+            ViewCompat.postOnAnimation(mBar, mPublishRunnable);
+        }
+    }
+
+    private void publish() {
+        // Updates from now on schedule a new publication.
+        mPublishScheduled.set(false);
+
+        if (isIndeterminate()) {
+            if (!mBar.isIndeterminate()) {
+                mBar.setIndeterminate(true);
+            }
+            return;
+        }
+
+        final long total = getTotal();
+        mBar.setProgressFraction(total > 0 ? (double)getDone() / total : 0);
+    }
+}
@@ -0,0 +1,200 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.os.Build;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.core.view.ViewCompat;
+
+/**
+ * Drives a progress bar from asynchronous work.
+ * <p>
+ * The binding is a {@link ProgressReporter} handed to background code. Reports only store the
+ * latest value in a lock-free slot, and the bar is updated on the UI thread at most once per
+ * frame, without taking the bar's monitor. When the work completes, the bar shows a full ring
+ * on success, or an empty one on failure or cancellation. Reports after completion are ignored.
+ * </p>
+ * <pre>
+ * Future&lt;File&gt; download = ProgressBinding.submit(progressBar, executor,
+ *         reporter -&gt; download(url, reporter));
+ * </pre>
+ *
+ **/
+public final class ProgressBinding implements ProgressReporter {
+    /**
+     * Work reporting its progress, run by {@link #submit(UnifiedCircularProgressBar,
+     * Executor, Task)}.
+     *
+     * @param <T> the result type
+     */
+    public interface Task<T> {
+        /**
+         * Runs the work on a background thread.
+         *
+         * @param reporter the reporter to report progress to
+         * @return the result of the work
+         * @throws Exception if the work fails
+         */
+        T run(@NonNull ProgressReporter reporter) throws Exception;
+    }
+
+    private final UnifiedCircularProgressBar mBar;
+    private final ProgressMailbox mMailbox = new ProgressMailbox();
+    private final Runnable mApplyRunnable = this::apply;
+    private volatile boolean mCompleted;
+    private volatile boolean mSucceeded;
+
+    private ProgressBinding(UnifiedCircularProgressBar bar) {
+        mBar = bar;
+    }
+
+    /**
+     * Binds a progress bar to work reporting its progress manually. The bar is indeterminate
+     * until the first report.
+     *
+     * @param bar the progress bar to drive
+     * @return the reporter to hand to the work, to be completed with {@link #complete(boolean)}
+     */
+    @NonNull
+    public static ProgressBinding bind(@NonNull UnifiedCircularProgressBar bar) {
+        final ProgressBinding binding = new ProgressBinding(bar);
+        binding.setIndeterminate();
+        return binding;
+    }
+
+    /**
+     * Binds a progress bar to a future. The bar is indeterminate unless the returned reporter
+     * is handed to the work producing the future, and completes with it.
+     *
+     * @param bar the progress bar to drive
+     * @param future the future to follow
+     * @return the reporter for the work producing the future
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    @NonNull
+    public static ProgressBinding bind(@NonNull UnifiedCircularProgressBar bar,
+                                       @NonNull CompletableFuture<?> future) {
+        final ProgressBinding binding = bind(bar);
+        future.whenComplete((result, error) -> binding.complete(error == null));
+        return binding;
+    }
+
+    /**
+     * Submits work to an executor, driving a progress bar until it completes, fails or is
+     * cancelled, even before it started.
+     *
+     * @param bar the progress bar to drive
+     * @param executor the executor running the work
+     * @param task the work, reporting its progress
+     * @param <T> the result type
+     * @return the future of the work
+     */
+    @NonNull
+    public static <T> Future<T> submit(@NonNull UnifiedCircularProgressBar bar,
+                                       @NonNull Executor executor,
+                                       @NonNull Task<T> task) {
+        final ProgressBinding binding = bind(bar);
+        final FutureTask<T> future = new BoundTask<>(binding, task);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Completes the binding whenever the future is done, including when it is cancelled
+     * before running.
+     */
+    private static final class BoundTask<T> extends FutureTask<T> {
+        private final ProgressBinding mBinding;
+
+        BoundTask(ProgressBinding binding, Task<T> task) {
+            super(() -> task.run(binding));
+            mBinding = binding;
+        }
+
+        @Override
+        protected void done() {
+            boolean succeeded = false;
+            if (!isCancelled()) {
+                try {
+                    get();
+                    succeeded = true;
+                } catch (ExecutionException | InterruptedException e) {
+                    // Failed, the future reports it to its consumers.
+                }
+            }
+            mBinding.complete(succeeded);
+        }
+    }
+
+    @Override
+    public void setProgress(long done, long total) {
+        if (mCompleted) return;
+        if (total < 0) {
+            setIndeterminate();
+            return;
+        }
+
+        double fraction = total > 0 ? (double)done / total : 0;
+        fraction = fraction > 0 ? (fraction < 1 ? fraction : 1) : 0;
+        post(Double.doubleToRawLongBits(fraction));
+    }
+
+    @Override
+    public void setIndeterminate() {
+        if (mCompleted) return;
+        post(ProgressMailbox.INDETERMINATE);
+    }
+
+    /**
+     * Completes the work: the bar shows a full ring on success, an empty one otherwise.
+     * Later reports are ignored.
+     *
+     * @param succeeded whether the work succeeded
+     */
+    public void complete(boolean succeeded) {
+        mSucceeded = succeeded;
+        mCompleted = true;
+        post(getFinalValue());
+    }
+
+    private long getFinalValue() {
+        return mSucceeded ? Double.doubleToRawLongBits(1) : Double.doubleToRawLongBits(0);
+    }
+
+    /**
+     * @return true once {@link #complete(boolean)} has been called
+     */
+    public boolean isCompleted() {
+        return mCompleted;
+    }
+
+    private void post(long value) {
+        if (mMailbox.put(value, true)) {
+            ViewCompat.postOnAnimation(mBar, mApplyRunnable);
+        }
+    }
+
+    private void apply() {
+        long value = mMailbox.take();
+        if (mCompleted) {
+            // A report racing with completion must not override it.
+            value = getFinalValue();
+        } else if (value == ProgressMailbox.EMPTY) {
+            return;
+        }
+
+        if (value == ProgressMailbox.INDETERMINATE) {
+            if (!mBar.isIndeterminate()) {
+                mBar.setIndeterminate(true);
+            }
+        } else {
+            mBar.setProgressFraction(Double.longBitsToDouble(value));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Renders a progress drawable into bitmaps at given timestamps, with no window, view or
+ * frame clock involved.
+ * <p>
+ * Timestamps are in milliseconds, on a timeline of the caller's choosing, and must not go
+ * backwards. State changes happen at a timestamp as well, and the ring animates from there
+ * exactly as it would on screen:
+ * </p>
+ * <pre>
+ * renderer.setIndeterminate(true, 0);
+ * renderer.render(bitmap, 500);
+ * renderer.setProgress(0.5f, 1000);
+ * renderer.render(bitmap, 1200);
+ * </pre>
+ * The drawable runs on this timeline only, never on the animation clock, so the same calls
+ * render the same frames, progress smoothing included.
+ * A renderer is confined to the thread using it, which does not need to be the UI thread.
+ * Rendering into the same bitmap again allocates nothing.
+ *
+ **/
+public final class ProgressFrameRenderer {
+    private long mTime;
+    private final UnifiedCircularProgressDrawable mDrawable =
+            new UnifiedCircularProgressDrawable(() -> mTime);
+    private final Canvas mCanvas = new Canvas();
+    private Bitmap mBitmap;
+
+    /**
+     * Gets the drawable being rendered, to configure its tint, alpha or duration.
+     * It must not be started, stopped or drawn elsewhere.
+     *
+     * @return the rendered drawable
+     */
+    @NonNull
+    public UnifiedCircularProgressDrawable getDrawable() {
+        return mDrawable;
+    }
+
+    /**
+     * Changes the indeterminate mode at the given time.
+     *
+     * @param indeterminate true to enable the indeterminate mode
+     * @param time the time of the change, in milliseconds
+     */
+    public void setIndeterminate(boolean indeterminate, long time) {
+        mTime = time;
+        mDrawable.advanceTo(time);
+        mDrawable.setIndeterminate(indeterminate);
+        mDrawable.startAt(time);
+    }
+
+    /**
+     * Sets the progress at the given time.
+     *
+     * @param progress the new amount of progress, between 0 and 1
+     * @param time the time of the change, in milliseconds
+     */
+    public void setProgress(float progress, long time) {
+        mTime = time;
+        mDrawable.advanceTo(time);
+        mDrawable.setProgress(progress);
+        mDrawable.startAt(time);
+    }
+
+    /**
+     * Renders the frame at the given time into a bitmap, replacing its content.
+     * The drawable is sized to the bitmap.
+     *
+     * @param bitmap a mutable bitmap to render into
+     * @param time the time of the frame, in milliseconds
+     * @return the given bitmap
+     */
+    @NonNull
+    public Bitmap render(@NonNull Bitmap bitmap, long time) {
+        mTime = time;
+        mDrawable.advanceTo(time);
+
+        if (mBitmap != bitmap) {
+            mBitmap = bitmap;
+            mCanvas.setBitmap(bitmap);
+        }
+        if (mDrawable.getBounds().width() != bitmap.getWidth()
+                || mDrawable.getBounds().height() != bitmap.getHeight()) {
+            mDrawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        }
+
+        bitmap.eraseColor(Color.TRANSPARENT);
+        mDrawable.draw(mCanvas);
+        return bitmap;
+    }
+}
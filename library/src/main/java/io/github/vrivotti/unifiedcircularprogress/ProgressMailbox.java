@@ -0,0 +1,71 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, single slot mailbox handing progress values over to the UI thread.
+ * Only the latest value is kept, and at most one delivery is requested until the
+ * consumer takes it.
+ *
+ **/
+final class ProgressMailbox {
+    static final long EMPTY = Long.MIN_VALUE;
+    // Marks indeterminate progress among raw fraction bits: not a valid fraction, and
+    // distinct from EMPTY.
+    static final long INDETERMINATE = Double.doubleToRawLongBits(Double.NaN);
+
+    private final AtomicLong mValue = new AtomicLong(EMPTY);
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    /**
+     * Stores a value, replacing any value not yet taken.
+     *
+     * @param value the new value, must not be {@link #EMPTY}
+     * @param schedule whether a delivery may be requested now
+     * @return true if the caller has to schedule a delivery
+     */
+    boolean put(long value, boolean schedule) {
+        mValue.set(value);
+        return schedule && mScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Requests a delivery of the stored value, for callers deciding to schedule only
+     * after storing it.
+     *
+     * @return true if the caller has to schedule a delivery
+     */
+    boolean schedule() {
+        return mScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Stores a value unless another one is waiting, which is then newer. Never requests
+     * a delivery.
+     *
+     * @param value the new value, must not be {@link #EMPTY}
+     */
+    void putIfEmpty(long value) {
+        mValue.compareAndSet(EMPTY, value);
+    }
+
+    /**
+     * Takes the pending value and allows the next {@link #put(long, boolean)} to request
+     * a new delivery.
+     *
+     * @return the latest value, or {@link #EMPTY} if there is none
+     */
+    long take() {
+        mScheduled.set(false);
+        return mValue.getAndSet(EMPTY);
+    }
+
+    /**
+     * Forgets about a requested delivery, e.g. after its runnable was removed.
+     * The pending value, if any, is kept.
+     */
+    void unschedule() {
+        mScheduled.set(false);
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Rendering counters of a progress bar or drawable.
+ * <p>
+ * Counters are plain fields updated in place, so collecting them allocates nothing and they
+ * can be left enabled in production. Frame and draw counters are updated on the UI thread,
+ * cross-thread refreshes from any thread.
+ * </p>
+ * Attach an instance with {@link UnifiedCircularProgressBar#setMetrics(ProgressMetrics)} or
+ * {@link UnifiedCircularProgressDrawable#setMetrics(ProgressMetrics)}, and either read it
+ * whenever needed or get it periodically through a {@link Listener}.
+ *
+ **/
+public final class ProgressMetrics {
+    /**
+     * Receives the metrics periodically while the drawable is animating.
+     */
+    public interface Listener {
+        /**
+         * Called on the UI thread. The metrics must not be kept past this call if they are
+         * reset in it.
+         *
+         * @param metrics the metrics being reported
+         */
+        void onReport(@NonNull ProgressMetrics metrics);
+    }
+
+    private long mDrawCount;
+    private long mDrawTimeNanos;
+    private long mMaxDrawTimeNanos;
+    private long mFramesExpected;
+    private long mFramesSkipped;
+    private long mAnimatorRebuilds;
+    private final AtomicLong mRefreshesPosted = new AtomicLong();
+    private final AtomicLong mRefreshesCoalesced = new AtomicLong();
+
+    private Listener mListener;
+    private long mReportInterval;
+    private long mLastReportTime = Long.MIN_VALUE;
+
+    /**
+     * Sets the listener receiving the metrics, at most once per interval.
+     *
+     * @param listener the listener, or null to stop reporting
+     * @param reportInterval the minimum interval between two reports, in milliseconds
+     */
+    public void setListener(@Nullable Listener listener, long reportInterval) {
+        mListener = listener;
+        mReportInterval = reportInterval;
+        mLastReportTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the number of times the drawable has been drawn
+     */
+    public long getDrawCount() {
+        return mDrawCount;
+    }
+
+    /**
+     * @return the total time spent drawing, in nanoseconds
+     */
+    public long getDrawTimeNanos() {
+        return mDrawTimeNanos;
+    }
+
+    /**
+     * @return the longest single draw, in nanoseconds
+     */
+    public long getMaxDrawTimeNanos() {
+        return mMaxDrawTimeNanos;
+    }
+
+    /**
+     * @return the number of animation frames which requested a redraw. Comparing it to
+     * {@link #getDrawCount()} gives the frames which were not drawn.
+     */
+    public long getFramesExpected() {
+        return mFramesExpected;
+    }
+
+    /**
+     * @return the number of display frames skipped on purpose by the frame rate cap
+     */
+    public long getFramesSkipped() {
+        return mFramesSkipped;
+    }
+
+    /**
+     * @return the number of times the animation has been rebuilt, for a progress retarget,
+     * a mode transition or a new indeterminate cycle
+     */
+    public long getAnimatorRebuilds() {
+        return mAnimatorRebuilds;
+    }
+
+    /**
+     * @return the number of progress updates from other threads posted to the UI thread
+     */
+    public long getRefreshesPosted() {
+        return mRefreshesPosted.get();
+    }
+
+    /**
+     * @return the number of progress updates from other threads merged into an already
+     * posted one
+     */
+    public long getRefreshesCoalesced() {
+        return mRefreshesCoalesced.get();
+    }
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    public void reset() {
+        mDrawCount = 0;
+        mDrawTimeNanos = 0;
+        mMaxDrawTimeNanos = 0;
+        mFramesExpected = 0;
+        mFramesSkipped = 0;
+        mAnimatorRebuilds = 0;
+        mRefreshesPosted.set(0);
+        mRefreshesCoalesced.set(0);
+    }
+
+    void recordDraw(long drawTimeNanos) {
+        mDrawCount++;
+        mDrawTimeNanos += drawTimeNanos;
+        if (drawTimeNanos > mMaxDrawTimeNanos) {
+            mMaxDrawTimeNanos = drawTimeNanos;
+        }
+    }
+
+    void recordFrameExpected() {
+        mFramesExpected++;
+    }
+
+    void recordFrameSkipped() {
+        mFramesSkipped++;
+    }
+
+    void recordAnimatorRebuilds(long count) {
+        mAnimatorRebuilds += count;
+    }
+
+    void recordRefresh(boolean posted) {
+        if (posted) {
+            mRefreshesPosted.incrementAndGet();
+        } else {
+            mRefreshesCoalesced.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reports the metrics to the listener if the report interval has elapsed.
+     *
+     * @param frameTime current frame time, in milliseconds
+     */
+    void onFrame(long frameTime) {
+        if (mListener == null) return;
+
+        if (mLastReportTime == Long.MIN_VALUE) {
+            mLastReportTime = frameTime;
+        } else if (frameTime - mLastReportTime >= mReportInterval) {
+            mLastReportTime = frameTime;
+            mListener.onReport(this);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+/**
+ * Receives the progress of background work, from any thread.
+ * Implementations provided by this library never block nor allocate, so they can be called
+ * from tight I/O loops.
+ *
+ * @see ProgressBinding
+ **/
+public interface ProgressReporter {
+    /**
+     * Reports the amount of work done.
+     *
+     * @param done the amount of work done
+     * @param total the total amount of work, or a negative value if unknown
+     */
+    void setProgress(long done, long total);
+
+    /**
+     * Reports that the amount of remaining work is unknown.
+     */
+    void setIndeterminate();
+}
@@ -0,0 +1,86 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.drawable.AnimatedVectorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Plays the steady indeterminate cycle with an {@link AnimatedVectorDrawable}, which is
+ * animated by the render thread on hardware accelerated canvases, so it keeps spinning
+ * while the UI thread is busy.
+ *
+ **/
+@RequiresApi(Build.VERSION_CODES.N_MR1)
+final class RenderThreadRing implements Drawable.Callback {
+    private final Drawable mOwner;
+    private final AnimatedVectorDrawable mDrawable;
+
+    private boolean mActive;
+    private float mRotation;
+    private int mAlpha = 0xFF;
+    private ColorFilter mColorFilter;
+
+    RenderThreadRing(Drawable owner, AnimatedVectorDrawable drawable) {
+        mOwner = owner;
+        mDrawable = drawable;
+        mDrawable.setCallback(this);
+    }
+
+    /**
+     * Starts playing steady cycles.
+     *
+     * @param rotation ring start of the first cycle, in degrees
+     */
+    void start(float rotation) {
+        mRotation = rotation;
+        mActive = true;
+        mDrawable.start();
+    }
+
+    void stop() {
+        mActive = false;
+        mDrawable.stop();
+    }
+
+    boolean isActive() {
+        return mActive;
+    }
+
+    void draw(Canvas canvas, int width, int height, int alpha, ColorFilter colorFilter) {
+        mDrawable.setBounds(0, 0, width, height);
+        // Setters invalidate the drawable, only call them on changes.
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            mDrawable.setAlpha(alpha);
+        }
+        if (mColorFilter != colorFilter) {
+            mColorFilter = colorFilter;
+            mDrawable.setColorFilter(colorFilter);
+        }
+
+        int saveCount = canvas.save();
+        canvas.rotate(mRotation, width / 2f, height / 2f);
+        mDrawable.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+        mOwner.invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        mOwner.scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        mOwner.unscheduleSelf(what);
+    }
+}
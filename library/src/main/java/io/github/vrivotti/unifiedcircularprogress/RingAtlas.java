@@ -0,0 +1,164 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+
+/**
+ * Pre-rendered frames of the ring, for a given pixel size and thickness.
+ * <p>
+ * Frame {@code i} of {@code n} holds an arc starting at the top and sweeping {@code i / (n - 1)}
+ * turns, so any ring position can be drawn as one frame rotated by the ring start. There are
+ * enough frames for the arc end to move by at most a pixel from one frame to the next, so
+ * larger rings get more frames, and rings over {@link #MAX_FRAME_SIZE} are not cached. Each frame
+ * is a bitmap of its own, so that it can be drawn with a rotation matrix, without changing
+ * the canvas state.
+ * Frames are stored as an alpha mask, so they are tinted at draw time by the paint and
+ * can be shared between drawables whatever their tint.
+ * </p>
+ * Atlases are cached and shared. The cache keeps the most recently used atlases within
+ * {@link #MAX_CACHE_BYTES}, and is dropped under memory pressure.
+ *
+ **/
+final class RingAtlas {
+    private static final int MIN_FRAME_COUNT = 64;
+    static final int MAX_FRAME_SIZE = 96;
+    // Two atlases of the largest frame size.
+    static final int MAX_CACHE_BYTES = 2 * getByteCount(MAX_FRAME_SIZE, MAX_FRAME_SIZE);
+
+    private static final ArrayList<RingAtlas> sCache = new ArrayList<>();
+    private static int sCacheBytes;
+    private static volatile int sGeneration;
+    private static boolean sCallbacksRegistered;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final float mStrokeWidth;
+    private final Bitmap[] mFrames;
+
+    private RingAtlas(int width, int height, float strokeWidth) {
+        mWidth = width;
+        mHeight = height;
+        mStrokeWidth = strokeWidth;
+        mFrames = new Bitmap[getFrameCount(width, height)];
+
+        final Canvas canvas = new Canvas();
+        final RectF arc = new RectF();
+        final Paint paint = UnifiedCircularProgressDrawable.createRingPaint(
+                UnifiedCircularProgressDrawable.computeArc(width, height, strokeWidth, arc));
+        for (int i = 0; i < mFrames.length; i++) {
+            mFrames[i] = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            canvas.setBitmap(mFrames[i]);
+            canvas.drawArc(arc, -90, 360f * i / (mFrames.length - 1), false, paint);
+        }
+        canvas.setBitmap(null);
+    }
+
+    /**
+     * Returns a shared atlas for the given configuration, rendering it if needed.
+     * The least recently used atlases are evicted to make room for a new one. Drawables
+     * holding an evicted atlas keep drawing with it.
+     */
+    static synchronized RingAtlas obtain(int width, int height, float strokeWidth) {
+        for (int i = sCache.size() - 1; i >= 0; i--) {
+            final RingAtlas atlas = sCache.get(i);
+            if (atlas.matches(width, height, strokeWidth)) {
+                // The cache is ordered from least to most recently used.
+                if (i != sCache.size() - 1) {
+                    sCache.remove(i);
+                    sCache.add(atlas);
+                }
+                return atlas;
+            }
+        }
+
+        final int byteCount = getByteCount(width, height);
+        while (!sCache.isEmpty() && sCacheBytes + byteCount > MAX_CACHE_BYTES) {
+            sCacheBytes -= getByteCount(sCache.remove(0));
+        }
+
+        final RingAtlas atlas = new RingAtlas(width, height, strokeWidth);
+        sCache.add(atlas);
+        sCacheBytes += byteCount;
+        return atlas;
+    }
+
+    private static int getFrameCount(int width, int height) {
+        // The arc fits in the bounds, so its circumference is at most pi times their side.
+        final int circumference = (int)Math.ceil(Math.PI * Math.min(width, height));
+        return Math.max(MIN_FRAME_COUNT, circumference + 1);
+    }
+
+    private static int getByteCount(int width, int height) {
+        // One byte per pixel, in ALPHA_8.
+        return getFrameCount(width, height) * width * height;
+    }
+
+    private static int getByteCount(RingAtlas atlas) {
+        return getByteCount(atlas.mWidth, atlas.mHeight);
+    }
+
+    /**
+     * @return a counter incremented every time the cache is dropped. Holders of an
+     * atlas from an older generation should obtain it again, so the old one can be collected.
+     * Read on every frame, without locking.
+     */
+    static int getGeneration() {
+        return sGeneration;
+    }
+
+    static synchronized void evictAll() {
+        sCache.clear();
+        sCacheBytes = 0;
+        sGeneration++;
+    }
+
+    /**
+     * Listens to memory pressure on the application of the given context to evict the cache.
+     */
+    static synchronized void registerComponentCallbacks(Context context) {
+        if (sCallbacksRegistered) return;
+
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    evictAll();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                evictAll();
+            }
+        });
+        sCallbacksRegistered = true;
+    }
+
+    boolean matches(int width, int height, float strokeWidth) {
+        return mWidth == width && mHeight == height && mStrokeWidth == strokeWidth;
+    }
+
+    /**
+     * Returns the frame closest to the given sweep, of the atlas size.
+     *
+     * @param sweep the arc length, in turns
+     */
+    Bitmap getFrame(float sweep) {
+        final int last = mFrames.length - 1;
+        int frame = Math.round(sweep * last);
+        if (frame < 0) frame = 0;
+        if (frame > last) frame = last;
+        return mFrames[frame];
+    }
+}
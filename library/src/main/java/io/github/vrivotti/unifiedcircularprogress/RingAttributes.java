@@ -0,0 +1,131 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.PorterDuff;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+
+/**
+ * The {@link R.styleable#UnifiedCircularProgressBar} attributes of a view, with their defaults.
+ * {@link UnifiedCircularProgressBar} and {@link UnifiedCircularProgressTextureView} both read
+ * them here, so that the same XML gives the same ring.
+ *
+ **/
+final class RingAttributes {
+    int mMinWidth = 24;
+    int mMaxWidth = 48;
+    int mMinHeight = 24;
+    int mMaxHeight = 48;
+    long mMin = 0;
+    long mMax = 100;
+    long mProgress = 0;
+    boolean mIndeterminate = false;
+    boolean mMirrorForRtl = false;
+    ColorStateList mTintList;
+    PorterDuff.Mode mTintMode;
+    boolean mHasTintMode;
+    boolean mSpriteAtlas = false;
+    boolean mRenderThreadAnimation = false;
+    int mMaxFrameRate = 0;
+    int mMinRetargetInterval = 0;
+    float mThickness = UnifiedCircularProgressDrawable.BORDER_WIDTH;
+    boolean mProgressSmoothing = false;
+    int mSegmentLayout = UnifiedCircularProgressDrawable.SEGMENT_LAYOUT_ARCS;
+    int mSegmentCount = 0;
+
+    // Last default tint, reused while the theme color stays the same. ColorStateList is
+    // immutable, so views inflated on other threads can share it.
+    private static volatile ColorStateList sDefaultTint;
+
+    private RingAttributes() {
+    }
+
+    /**
+     * Reads the attributes of a view being inflated.
+     */
+    static RingAttributes obtain(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        final RingAttributes r = new RingAttributes();
+        final TypedArray a = context.obtainStyledAttributes(
+                attrs, R.styleable.UnifiedCircularProgressBar, defStyleAttr, defStyleRes);
+
+        r.mMinWidth = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_minWidth, r.mMinWidth);
+        r.mMaxWidth = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_maxWidth, r.mMaxWidth);
+        r.mMinHeight = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_minHeight, r.mMinHeight);
+        r.mMaxHeight = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_maxHeight, r.mMaxHeight);
+        r.mMin = a.getInt(R.styleable.UnifiedCircularProgressBar_min, (int)r.mMin);
+        r.mMax = a.getInt(R.styleable.UnifiedCircularProgressBar_max, (int)r.mMax);
+        r.mProgress = a.getInt(R.styleable.UnifiedCircularProgressBar_progress, (int)r.mProgress);
+
+        if (a.hasValue(R.styleable.UnifiedCircularProgressBar_tintMode)) {
+            r.mTintMode = parseTintMode(a.getInt(
+                    R.styleable.UnifiedCircularProgressBar_tintMode, -1), null);
+            r.mHasTintMode = true;
+        }
+        if (a.hasValue(R.styleable.UnifiedCircularProgressBar_tint)) {
+            r.mTintList = a.getColorStateList(R.styleable.UnifiedCircularProgressBar_tint);
+        } else {
+            r.mTintList = getDefaultTint(context.getTheme());
+        }
+
+        r.mIndeterminate = a.getBoolean(R.styleable.UnifiedCircularProgressBar_indeterminate, r.mIndeterminate);
+        r.mMirrorForRtl = a.getBoolean(R.styleable.UnifiedCircularProgressBar_mirrorForRtl, r.mMirrorForRtl);
+        r.mSpriteAtlas = a.getBoolean(R.styleable.UnifiedCircularProgressBar_spriteAtlas, r.mSpriteAtlas);
+        r.mRenderThreadAnimation = a.getBoolean(
+                R.styleable.UnifiedCircularProgressBar_renderThreadAnimation, r.mRenderThreadAnimation);
+        r.mMaxFrameRate = a.getInt(R.styleable.UnifiedCircularProgressBar_maxFrameRate, r.mMaxFrameRate);
+        r.mMinRetargetInterval = a.getInt(
+                R.styleable.UnifiedCircularProgressBar_minRetargetInterval, r.mMinRetargetInterval);
+        r.mThickness = a.getFloat(R.styleable.UnifiedCircularProgressBar_ringThickness, r.mThickness);
+        r.mProgressSmoothing = a.getBoolean(
+                R.styleable.UnifiedCircularProgressBar_progressSmoothing, r.mProgressSmoothing);
+        r.mSegmentLayout = a.getInt(R.styleable.UnifiedCircularProgressBar_segmentLayout, r.mSegmentLayout);
+        r.mSegmentCount = a.getInt(R.styleable.UnifiedCircularProgressBar_segmentCount, r.mSegmentCount);
+
+        a.recycle();
+        return r;
+    }
+
+    /**
+     * @return the tint mode to create the drawable with
+     */
+    PorterDuff.Mode getDrawableTintMode() {
+        return mHasTintMode ? mTintMode : PorterDuff.Mode.SRC_IN;
+    }
+
+    /**
+     * Returns the default tint of the given theme. The color is resolved every time, since
+     * a theme can change with {@link Resources.Theme#applyStyle(int, boolean)}, but the
+     * tint of the last color is reused, as views are mostly inflated in batches with the
+     * same theme.
+     */
+    private static ColorStateList getDefaultTint(Resources.Theme theme) {
+        final TypedValue typedValue = new TypedValue();
+        theme.resolveAttribute(R.attr.colorControlActivated, typedValue, true);
+        ColorStateList tint = sDefaultTint;
+        if (tint == null || tint.getDefaultColor() != typedValue.data) {
+            tint = ColorStateList.valueOf(typedValue.data);
+            sDefaultTint = tint;
+        }
+        return tint;
+    }
+
+    /**
+     * Parses a {@link android.graphics.PorterDuff.Mode} from a tintMode
+     * attribute's enum value.
+     *
+     */
+    private static PorterDuff.Mode parseTintMode(int value, PorterDuff.Mode defaultMode) {
+        switch (value) {
+            case 3: return PorterDuff.Mode.SRC_OVER;
+            case 5: return PorterDuff.Mode.SRC_IN;
+            case 9: return PorterDuff.Mode.SRC_ATOP;
+            case 14: return PorterDuff.Mode.MULTIPLY;
+            case 15: return PorterDuff.Mode.SCREEN;
+            case 16: return PorterDuff.Mode.ADD;
+            default: return defaultMode;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Frame clock shared by all the running progress drawables of a thread.
+ * A single vsync callback advances every registered drawable in one pass, and drawables
+ * unregister themselves once their animation is over.
+ *
+ **/
+final class RingFrameClock {
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private static final ThreadLocal<RingFrameClock> sInstance = new ThreadLocal<>();
+
+    private final ArrayList<UnifiedCircularProgressDrawable> mDrawables = new ArrayList<>();
+    private boolean mListDirty;
+    private boolean mFrameScheduled;
+
+    private ChoreographerFrameSource mChoreographerFrameSource;
+    private Handler mHandler;
+    private Runnable mFallbackFrameRunnable;
+
+    private RingFrameClock() {
+    }
+
+    static RingFrameClock getInstance() {
+        RingFrameClock clock = sInstance.get();
+        if (clock == null) {
+            clock = new RingFrameClock();
+            sInstance.set(clock);
+        }
+        return clock;
+    }
+
+    /**
+     * Registers a drawable to be advanced on every frame, until it reports it is done.
+     */
+    void add(UnifiedCircularProgressDrawable drawable) {
+        if (!mDrawables.contains(drawable)) {
+            mDrawables.add(drawable);
+        }
+        scheduleFrame();
+    }
+
+    void remove(UnifiedCircularProgressDrawable drawable) {
+        int index = mDrawables.indexOf(drawable);
+        if (index >= 0) {
+            // The list may be iterated right now, compact it after the frame.
+            mDrawables.set(index, null);
+            mListDirty = true;
+        }
+    }
+
+    private void doFrame(long frameTime) {
+        mFrameScheduled = false;
+
+        final int count = mDrawables.size();
+        for (int i = 0; i < count; i++) {
+            final UnifiedCircularProgressDrawable drawable = mDrawables.get(i);
+            if (drawable != null && !drawable.doFrame(frameTime)) {
+                mDrawables.set(i, null);
+                mListDirty = true;
+            }
+        }
+        cleanUpList();
+
+        if (!mDrawables.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    private void cleanUpList() {
+        if (mListDirty) {
+            for (int i = mDrawables.size() - 1; i >= 0; i--) {
+                if (mDrawables.get(i) == null) {
+                    mDrawables.remove(i);
+                }
+            }
+            mListDirty = false;
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) return;
+        mFrameScheduled = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mChoreographerFrameSource == null) {
+                mChoreographerFrameSource = new ChoreographerFrameSource();
+            }
+            mChoreographerFrameSource.postFrameCallback();
+        } else {
+            if (mHandler == null) {
+                mHandler = new Handler(Looper.myLooper());
+                mFallbackFrameRunnable = () -> doFrame(SystemClock.uptimeMillis());
+            }
+            mHandler.postDelayed(mFallbackFrameRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class ChoreographerFrameSource implements Choreographer.FrameCallback {
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+
+        void postFrameCallback() {
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            RingFrameClock.this.doFrame(frameTimeNanos / 1000000);
+        }
+    }
+}
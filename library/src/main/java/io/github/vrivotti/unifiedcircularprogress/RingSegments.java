@@ -0,0 +1,166 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import io.github.vrivotti.unifiedcircularprogress.core.RingModel;
+import io.github.vrivotti.unifiedcircularprogress.core.TimeSource;
+
+/**
+ * Several independent rings sharing one drawable, shown either as arcs splitting the
+ * circle or as concentric tracks.
+ * <p>
+ * Each segment has its own {@link RingModel}, so it keeps the smooth transitions between
+ * determinate and indeterminate modes, but all of them are advanced with the same frame
+ * time and drawn in a single pass with the same paint. Arcs and tracks are computed in
+ * device space when the size or the thickness change, like the single ring.
+ * </p>
+ *
+ **/
+final class RingSegments {
+    // Empty space between two arcs, in turns.
+    private static final float ARC_GAP = 0.02f;
+    // Empty space between two tracks, in drawable units.
+    private static final float TRACK_GAP = 2f;
+
+    private final RingModel[] mModels;
+    private final RectF[] mTracks;
+    private final RectF mArc = new RectF();
+    private float mStrokeWidth;
+    private int mLayout;
+    private boolean mStarted;
+
+    RingSegments(int count, int layout, TimeSource timeSource) {
+        mModels = new RingModel[count];
+        mTracks = new RectF[count];
+        mLayout = layout;
+
+        for (int i = 0; i < count; i++) {
+            mModels[i] = new RingModel(timeSource);
+            mTracks[i] = new RectF();
+        }
+    }
+
+    int getCount() {
+        return mModels.length;
+    }
+
+    RingModel get(int index) {
+        return mModels[index];
+    }
+
+    /**
+     * Recomputes the arcs and tracks of a {@code width} x {@code height} area at the canvas
+     * origin, in device space.
+     *
+     * @param thickness the stroke width, in units of the ring viewport
+     */
+    void setGeometry(float width, float height, float thickness) {
+        final RectF bounds = UnifiedCircularProgressDrawable.RECT_BOUNDS;
+        final float scaleX = width / bounds.width();
+        final float scaleY = height / bounds.height();
+        mStrokeWidth = UnifiedCircularProgressDrawable.computeArc(width, height, thickness, mArc);
+
+        final int count = mModels.length;
+        final float radius = UnifiedCircularProgressDrawable.getArcRadius(thickness);
+        final float minRadius = thickness;
+        final float spacing = count > 1
+                ? Math.max(0, Math.min(thickness + TRACK_GAP, (radius - minRadius) / (count - 1)))
+                : 0;
+        for (int i = 0; i < count; i++) {
+            final float trackRadius = radius - i * spacing;
+            mTracks[i].set(width / 2 - trackRadius * scaleX, height / 2 - trackRadius * scaleY,
+                    width / 2 + trackRadius * scaleX, height / 2 + trackRadius * scaleY);
+        }
+    }
+
+    void setLayout(int layout) {
+        mLayout = layout;
+    }
+
+    void setDuration(int duration) {
+        for (RingModel model : mModels) {
+            model.setDuration(duration);
+        }
+    }
+
+    void setSmoothingEnabled(boolean enabled) {
+        for (RingModel model : mModels) {
+            model.setSmoothingEnabled(enabled);
+        }
+    }
+
+    /**
+     * Starts all the segments at the same time.
+     */
+    void start(long time) {
+        mStarted = true;
+        for (RingModel model : mModels) {
+            model.start(time);
+        }
+    }
+
+    void stop() {
+        mStarted = false;
+        for (RingModel model : mModels) {
+            model.stop();
+        }
+    }
+
+    /**
+     * @return true between {@link #start(long)} and {@link #stop()}, even once all the
+     * segments are settled
+     */
+    boolean isStarted() {
+        return mStarted;
+    }
+
+    boolean isRunning() {
+        for (RingModel model : mModels) {
+            if (model.isRunning()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if any segment is still running
+     */
+    boolean advance(long frameTime) {
+        boolean running = false;
+        for (RingModel model : mModels) {
+            running |= model.advance(frameTime);
+        }
+        return running;
+    }
+
+    void draw(Canvas canvas, Paint paint) {
+        paint.setStrokeWidth(mStrokeWidth);
+        if (mLayout == UnifiedCircularProgressDrawable.SEGMENT_LAYOUT_TRACKS) {
+            for (int i = 0; i < mModels.length; i++) {
+                final float ringStart = mModels[i].getRingStart();
+                final float sweep = mModels[i].getRingEnd() - ringStart;
+                canvas.drawArc(mTracks[i], 360 * ringStart - 90, 360 * sweep, false, paint);
+            }
+        } else {
+            final RectF rect = mArc;
+            final float sector = 1f / mModels.length;
+            final float length = mModels.length > 1 ? sector - ARC_GAP : 1;
+            for (int i = 0; i < mModels.length; i++) {
+                // The ring is folded into its sector, wrapping around within it.
+                float ringStart = mModels[i].getRingStart();
+                final float sweep = mModels[i].getRingEnd() - ringStart;
+                ringStart -= (float)Math.floor(ringStart);
+
+                final float sectorStart = i * sector + (sector - length) / 2;
+                final float head = Math.min(sweep, 1 - ringStart);
+                canvas.drawArc(rect, 360 * (sectorStart + ringStart * length) - 90,
+                        360 * head * length, false, paint);
+                if (sweep > head) {
+                    canvas.drawArc(rect, 360 * sectorStart - 90,
+                            360 * (sweep - head) * length, false, paint);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+
+/**
+ * Small cache of tint color filters, shared by all the drawables, so that toggling between
+ * the colors of a stateful tint does not allocate once they have all been seen.
+ * <p>
+ * Entries are kept most recently used first, and the least recently used one is dropped
+ * when the cache is full.
+ * </p>
+ *
+ **/
+final class TintFilterCache {
+    private static final int MAX_SIZE = 16;
+
+    private static final int[] sColors = new int[MAX_SIZE];
+    private static final PorterDuff.Mode[] sModes = new PorterDuff.Mode[MAX_SIZE];
+    private static final PorterDuffColorFilter[] sFilters = new PorterDuffColorFilter[MAX_SIZE];
+    private static int sSize;
+
+    private TintFilterCache() {
+    }
+
+    /**
+     * Returns a shared filter for the given color and mode, creating it if needed.
+     */
+    static synchronized PorterDuffColorFilter obtain(int color, PorterDuff.Mode mode) {
+        int index = 0;
+        while (index < sSize && (sColors[index] != color || sModes[index] != mode)) {
+            index++;
+        }
+
+        final PorterDuffColorFilter filter;
+        if (index < sSize) {
+            filter = sFilters[index];
+        } else {
+            // They made PorterDuffColorFilter.setColor() and setMode() @hide.
+            filter = new PorterDuffColorFilter(color, mode);
+            if (sSize < MAX_SIZE) {
+                sSize++;
+            }
+            index = sSize - 1;
+        }
+
+        // Move the entry to the front, shifting the more recent ones.
+        System.arraycopy(sColors, 0, sColors, 1, index);
+        System.arraycopy(sModes, 0, sModes, 1, index);
+        System.arraycopy(sFilters, 0, sFilters, 1, index);
+        sColors[0] = color;
+        sModes[0] = mode;
+        sFilters[0] = filter;
+        return filter;
+    }
+}
@@ -2,25 +2,28 @@ package io.github.vrivotti.unifiedcircularprogress;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
-import android.content.res.Resources;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.PorterDuff;
 import android.graphics.Rect;
+import android.graphics.drawable.AnimatedVectorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewDebug;
-
-import java.util.ArrayList;
+import android.view.ViewTreeObserver;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.ProgressBar;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.core.view.ViewCompat;
 
 /**
  * <p>
@@ -55,14 +58,18 @@ import androidx.annotation.RequiresApi;
  * </p>
  */
 public final class UnifiedCircularProgressBar extends View {
+    private static final int DEFAULT_ACCESSIBILITY_EVENT_INTERVAL = 1000;
+    // Smallest progress change announced, except for completion.
+    private static final double ACCESSIBILITY_EVENT_STEP = 0.01;
+
     private int mMinWidth;
     private int mMaxWidth;
     private int mMinHeight;
     private int mMaxHeight;
-    private int mProgress;
-    private int mMin;
+    private long mProgress;
+    private long mMin;
     private boolean mMinInitialized;
-    private int mMax;
+    private long mMax;
     private boolean mMaxInitialized;
     private boolean mIndeterminate;
     private ProgressTintInfo mProgressTintInfo;
@@ -72,13 +79,26 @@ public final class UnifiedCircularProgressBar extends View {
     private boolean mNoInvalidate;
     private long mUiThreadId;
     private boolean mShouldStartAnimationDrawable;
-    private boolean mAttached;
-    private boolean mRefreshIsPosted;
+    private volatile boolean mAttached;
+    private volatile ProgressMetrics mMetrics;
 
     private boolean mMirrorForRtl = false;
+    private boolean mRenderThreadAnimation;
+    private boolean mRenderThreadDrawableInflated;
     private boolean mAggregatedIsVisible;
+    private boolean mClipped;
+    private boolean mSuspendRequested;
+    private final Rect mVisibleRect = new Rect();
+    private final ViewportListener mViewportListener = new ViewportListener();
+
+    private final ProgressMailbox mRefreshMailbox = new ProgressMailbox();
 
-    private final ArrayList<Integer> mRefreshData = new ArrayList<>();
+    private int mAccessibilityEventInterval = DEFAULT_ACCESSIBILITY_EVENT_INTERVAL;
+    private boolean mAccessibilityEventScheduled;
+    private long mLastAccessibilityEventTime;
+    private double mLastAccessibilityFraction = -1;
+    private double mAccessibilityFraction;
+    private final Runnable mAccessibilityEventSender = this::sendProgressAccessibilityEvent;
 
     /**
      * Create a new progress bar with range 0...100, initial progress of 0 and in indeterminate mode.
@@ -111,45 +131,39 @@ public final class UnifiedCircularProgressBar extends View {
 
     public void init(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         mUiThreadId = Thread.currentThread().getId();
+        mRefreshProgressRunnable = new RefreshProgressRunnable();
         initProgressBar();
 
-        final TypedArray a = context.obtainStyledAttributes(
-                attrs, R.styleable.UnifiedCircularProgressBar, defStyleAttr, defStyleRes);
+        final RingAttributes a = RingAttributes.obtain(context, attrs, defStyleAttr, defStyleRes);
 
         mNoInvalidate = true;
-        mMinWidth = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_minWidth, mMinWidth);
-        mMaxWidth = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_maxWidth, mMaxWidth);
-        mMinHeight = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_minHeight, mMinHeight);
-        mMaxHeight = a.getDimensionPixelSize(R.styleable.UnifiedCircularProgressBar_android_maxHeight, mMaxHeight);
-        setMin(a.getInt(R.styleable.UnifiedCircularProgressBar_min, mMin));
-        setMax(a.getInt(R.styleable.UnifiedCircularProgressBar_max, mMax));
-        setProgress(a.getInt(R.styleable.UnifiedCircularProgressBar_progress, mProgress));
-        setDrawable(new UnifiedCircularProgressDrawable());
-        mNoInvalidate = false;
-        setIndeterminate(a.getBoolean(R.styleable.UnifiedCircularProgressBar_indeterminate, mIndeterminate));
-        mMirrorForRtl = a.getBoolean(R.styleable.UnifiedCircularProgressBar_mirrorForRtl, mMirrorForRtl);
-
-        TypedValue typedValue = new TypedValue();
-        Resources.Theme theme = context.getTheme();
-        theme.resolveAttribute(R.attr.colorControlActivated, typedValue, true);
-        ColorStateList defaultTint = ColorStateList.valueOf(typedValue.data);
+        mMinWidth = a.mMinWidth;
+        mMaxWidth = a.mMaxWidth;
+        mMinHeight = a.mMinHeight;
+        mMaxHeight = a.mMaxHeight;
+        setMin(a.mMin);
+        setMax(a.mMax);
+        setProgress(a.mProgress);
 
         mProgressTintInfo = new ProgressTintInfo();
         mProgressTintInfo.mHasTint = true;
-        mProgressTintInfo.mTintList = defaultTint;
+        mProgressTintInfo.mTintList = a.mTintList;
+        mProgressTintInfo.mTintMode = a.mTintMode;
+        mProgressTintInfo.mHasTintMode = a.mHasTintMode;
 
-        if (a.hasValue(R.styleable.UnifiedCircularProgressBar_tintMode)) {
-            mProgressTintInfo.mTintMode = parseTintMode(a.getInt(
-                    R.styleable.UnifiedCircularProgressBar_tintMode, -1), null);
-            mProgressTintInfo.mHasTintMode = true;
-        }
-        if (a.hasValue(R.styleable.UnifiedCircularProgressBar_tint)) {
-            mProgressTintInfo.mTintList = a.getColorStateList(
-                    R.styleable.UnifiedCircularProgressBar_tint);
-            mProgressTintInfo.mHasTint = true;
-        }
-        a.recycle();
-        applyTint();
+        // Bars with the same tint share the drawable configuration until one of them changes it.
+        setDrawable(UnifiedCircularProgressDrawable.obtainShared(a.mTintList, a.getDrawableTintMode()));
+        mNoInvalidate = false;
+        setIndeterminate(a.mIndeterminate);
+        mMirrorForRtl = a.mMirrorForRtl;
+        setSpriteAtlasEnabled(a.mSpriteAtlas);
+        setRenderThreadAnimationEnabled(a.mRenderThreadAnimation);
+        setMaxFrameRate(a.mMaxFrameRate);
+        setMinRetargetInterval(a.mMinRetargetInterval);
+        setThickness(a.mThickness);
+        setProgressSmoothingEnabled(a.mProgressSmoothing);
+        setSegmentLayout(a.mSegmentLayout);
+        setSegmentCount(a.mSegmentCount);
     }
 
     /**
@@ -168,10 +182,6 @@ public final class UnifiedCircularProgressBar extends View {
         mMax = 100;
         mProgress = 0;
         mIndeterminate = false;
-        mMinWidth = 24;
-        mMaxWidth = 48;
-        mMinHeight = 24;
-        mMaxHeight = 48;
     }
 
     /**
@@ -198,6 +208,303 @@ public final class UnifiedCircularProgressBar extends View {
         startAnimation();
     }
 
+    /**
+     * <p>Indicate whether the indeterminate animation is drawn from pre-rendered frames.</p>
+     *
+     * @return true if the sprite atlas is enabled
+     */
+    public boolean isSpriteAtlasEnabled() {
+        return mDrawable.isAtlasEnabled();
+    }
+
+    /**
+     * <p>Draw the indeterminate animation from pre-rendered frames shared between progress
+     * bars of the same size, instead of stroking it on every frame. This is cheaper when
+     * many progress bars are shown at once. Frames are dropped under memory pressure.</p>
+     *
+     * @param enabled true to enable the sprite atlas
+     */
+    public void setSpriteAtlasEnabled(boolean enabled) {
+        if (mDrawable.isAtlasEnabled() != enabled) {
+            mutateDrawable().setAtlasEnabled(enabled);
+        }
+    }
+
+    /**
+     * <p>Gets the maximum frame rate of the animation.</p>
+     *
+     * @return the frame rate cap, in frames per second, or 0 if there is none
+     */
+    public int getMaxFrameRate() {
+        return mDrawable.getMaxFrameRate();
+    }
+
+    /**
+     * <p>Limit the frame rate of the animation, e.g. to 30 or 20 frames per second, to save
+     * power on long running animations. Under battery saver the frame rate is further limited
+     * to {@link #getPowerSaveMaxFrameRate()}, and when animations are disabled in the system
+     * settings the progress bar shows a static frame.</p>
+     *
+     * @param frameRate the frame rate cap, in frames per second, or 0 to follow the display
+     */
+    public void setMaxFrameRate(int frameRate) {
+        if (mDrawable.getMaxFrameRate() != frameRate) {
+            mutateDrawable().setMaxFrameRate(frameRate);
+        }
+    }
+
+    /**
+     * <p>Gets the minimum interval between two progress retargets.</p>
+     *
+     * @return the minimum retarget interval, in milliseconds
+     */
+    public int getMinRetargetInterval() {
+        return mDrawable.getMinRetargetInterval();
+    }
+
+    /**
+     * <p>Progress updates are applied at most once per frame, whatever the rate they are set at.
+     * This further limits how often the ring retargets to the latest progress, e.g. for
+     * progress listeners firing on every received byte.</p>
+     *
+     * @param interval the minimum retarget interval, in milliseconds, or 0 to retarget on
+     *                 every frame
+     */
+    public void setMinRetargetInterval(int interval) {
+        if (mDrawable.getMinRetargetInterval() != interval) {
+            mutateDrawable().setMinRetargetInterval(interval);
+        }
+    }
+
+    /**
+     * <p>Gets the thickness of the ring.</p>
+     *
+     * @return the stroke width, in units of the 48x48 ring viewport
+     */
+    public float getThickness() {
+        return mDrawable.getThickness();
+    }
+
+    /**
+     * <p>Set the thickness of the ring, in units of the 48x48 ring viewport, so that it scales
+     * with the progress bar. Default is 4.</p>
+     *
+     * @param thickness the stroke width, between 0 and 24
+     */
+    public void setThickness(float thickness) {
+        if (mDrawable.getThickness() != thickness) {
+            mutateDrawable().setThickness(thickness);
+        }
+    }
+
+    /**
+     * <p>Gets the number of segments.</p>
+     *
+     * @return the number of segments, or 0 if the progress bar shows a single ring
+     */
+    public int getSegmentCount() {
+        return mDrawable.getSegmentCount();
+    }
+
+    /**
+     * <p>Split the ring into segments, each one showing the progress of its own task, so that
+     * many concurrent tasks are shown by a single view. Segments are animated together and
+     * drawn in a single pass. The progress of the bar itself is not shown while segments are.
+     * Segments must be updated from the UI thread.</p>
+     *
+     * @param count the number of segments, or 0 to show a single ring
+     *
+     * @see #setSegmentLayout(int)
+     * @see #setSegmentProgress(int, float)
+     * @see #setSegmentIndeterminate(int, boolean)
+     */
+    public void setSegmentCount(int count) {
+        mDrawable.setSegmentCount(count);
+        startAnimation();
+    }
+
+    /**
+     * <p>Gets how segments are laid out.</p>
+     *
+     * @return {@link UnifiedCircularProgressDrawable#SEGMENT_LAYOUT_ARCS} or
+     * {@link UnifiedCircularProgressDrawable#SEGMENT_LAYOUT_TRACKS}
+     */
+    public int getSegmentLayout() {
+        return mDrawable.getSegmentLayout();
+    }
+
+    /**
+     * <p>Change how segments are laid out: as arcs splitting the circle, or as
+     * concentric tracks.</p>
+     *
+     * @param layout {@link UnifiedCircularProgressDrawable#SEGMENT_LAYOUT_ARCS} or
+     *               {@link UnifiedCircularProgressDrawable#SEGMENT_LAYOUT_TRACKS}
+     */
+    public void setSegmentLayout(int layout) {
+        mDrawable.setSegmentLayout(layout);
+    }
+
+    /**
+     * <p>Indicate whether a segment is in indeterminate mode.</p>
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @return true if the segment is in indeterminate mode
+     */
+    public boolean isSegmentIndeterminate(int index) {
+        return mDrawable.isSegmentIndeterminate(index);
+    }
+
+    /**
+     * <p>Change the indeterminate mode of a segment.</p>
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @param indeterminate true to enable the indeterminate mode
+     */
+    public void setSegmentIndeterminate(int index, boolean indeterminate) {
+        mDrawable.setSegmentIndeterminate(index, indeterminate);
+        startAnimation();
+    }
+
+    /**
+     * <p>Get the amount of progress of a segment.</p>
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @return the current progress, between 0 and 1
+     */
+    public float getSegmentProgress(int index) {
+        return mDrawable.getSegmentProgress(index);
+    }
+
+    /**
+     * Sets the amount of progress of a segment, animating it to the target value.
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @param progress the new amount of progress, between 0 and 1
+     */
+    public void setSegmentProgress(int index, float progress) {
+        mDrawable.setSegmentProgress(index, progress);
+        if (!mDrawable.isRunning()) {
+            startAnimation();
+        }
+    }
+
+    /**
+     * <p>Gets the metrics this progress bar records into.</p>
+     *
+     * @return the metrics, or null if none are recorded
+     */
+    @Nullable
+    public ProgressMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * <p>Record draw times, frame counts, animation rebuilds and progress updates posted from
+     * other threads into the given metrics. Recording allocates nothing, so it can be left
+     * enabled in production.</p>
+     *
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(@Nullable ProgressMetrics metrics) {
+        mMetrics = metrics;
+        mDrawable.setMetrics(metrics);
+    }
+
+    /**
+     * <p>Indicate whether determinate progress is paced by the rate it is reported at.</p>
+     *
+     * @return true if progress smoothing is enabled
+     */
+    public boolean isProgressSmoothingEnabled() {
+        return mDrawable.isProgressSmoothingEnabled();
+    }
+
+    /**
+     * <p>Estimate the progress throughput from recent updates and advance the ring at that
+     * rate, so that progress polled every few seconds still moves smoothly instead of jumping
+     * and stalling. The ring never goes past the last reported progress.</p>
+     *
+     * @param enabled true to enable progress smoothing
+     */
+    public void setProgressSmoothingEnabled(boolean enabled) {
+        if (mDrawable.isProgressSmoothingEnabled() != enabled) {
+            mutateDrawable().setProgressSmoothingEnabled(enabled);
+        }
+    }
+
+    /**
+     * <p>Gets the maximum frame rate of the animation while battery saver is on.</p>
+     *
+     * @return the frame rate cap under battery saver, in frames per second, or 0 if there is none
+     */
+    public int getPowerSaveMaxFrameRate() {
+        return mDrawable.getPowerSaveMaxFrameRate();
+    }
+
+    /**
+     * <p>Limit the frame rate of the animation while battery saver is on.
+     * The default is 20 frames per second.</p>
+     *
+     * @param frameRate the frame rate cap under battery saver, in frames per second, or 0 to
+     *                  follow the display
+     */
+    public void setPowerSaveMaxFrameRate(int frameRate) {
+        if (mDrawable.getPowerSaveMaxFrameRate() != frameRate) {
+            mutateDrawable().setPowerSaveMaxFrameRate(frameRate);
+        }
+    }
+
+    /**
+     * <p>Indicate whether the indeterminate animation is played on the render thread.</p>
+     *
+     * @return true if the render thread animation is enabled
+     */
+    public boolean isRenderThreadAnimationEnabled() {
+        return mRenderThreadAnimation;
+    }
+
+    /**
+     * <p>Play the indeterminate animation on the render thread, so that it keeps spinning while
+     * the UI thread is busy. This requires API 25 and hardware acceleration, and only applies
+     * with the default animation duration. Determinate progress and transitions are still
+     * animated on the UI thread, and switching between both is continuous.</p>
+     *
+     * @param enabled true to enable the render thread animation
+     */
+    public void setRenderThreadAnimationEnabled(boolean enabled) {
+        if (mRenderThreadAnimation == enabled) return;
+        mRenderThreadAnimation = enabled;
+
+        if (!enabled) {
+            mDrawable.setRenderThreadDrawable(null);
+            mRenderThreadDrawableInflated = false;
+        } else if (mAttached) {
+            inflateRenderThreadDrawable();
+        }
+    }
+
+    /**
+     * Inflates the render thread animation, which is deferred until the progress bar is
+     * attached, so that bars inflated but never shown do not pay for it.
+     */
+    private void inflateRenderThreadDrawable() {
+        if (mRenderThreadDrawableInflated) return;
+        mRenderThreadDrawableInflated = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1) {
+            mDrawable.setRenderThreadDrawable((AnimatedVectorDrawable)getContext().getDrawable(
+                    R.drawable.ucp_indeterminate_ring));
+        }
+    }
+
+    /**
+     * Makes the drawable configuration private to this progress bar before changing it.
+     */
+    private UnifiedCircularProgressDrawable mutateDrawable() {
+        mDrawable = (UnifiedCircularProgressDrawable)mDrawable.mutate();
+        return mDrawable;
+    }
+
     private void setDrawable(UnifiedCircularProgressDrawable d) {
         if (mDrawable != d) {
             mDrawable = d;
@@ -274,12 +581,17 @@ public final class UnifiedCircularProgressBar extends View {
         if (mDrawable != null && mProgressTintInfo != null) {
             final ProgressTintInfo tintInfo = mProgressTintInfo;
             if (tintInfo.mHasTint || tintInfo.mHasTintMode) {
-                mDrawable = (UnifiedCircularProgressDrawable)mDrawable.mutate();
-                if (tintInfo.mHasTint) {
-                    mDrawable.setTintList(tintInfo.mTintList);
-                }
-                if (tintInfo.mHasTintMode) {
-                    mDrawable.setTintMode(tintInfo.mTintMode);
+                final ColorStateList tintList = tintInfo.mHasTint ? tintInfo.mTintList : mDrawable.getTintList();
+                final PorterDuff.Mode tintMode = tintInfo.mHasTintMode ? tintInfo.mTintMode : mDrawable.getTintMode();
+                // Keep sharing the drawable state when it already has this tint.
+                if (!mDrawable.hasTint(tintList, tintMode)) {
+                    mutateDrawable();
+                    if (tintInfo.mHasTint) {
+                        mDrawable.setTintList(tintInfo.mTintList);
+                    }
+                    if (tintInfo.mHasTintMode) {
+                        mDrawable.setTintMode(tintInfo.mTintMode);
+                    }
                 }
                 // The drawable (or one of its children) may not have been
                 // stateful before applying the tint, so let's try again.
@@ -311,37 +623,46 @@ public final class UnifiedCircularProgressBar extends View {
 
     private class RefreshProgressRunnable implements Runnable {
         public void run() {
-            synchronized (UnifiedCircularProgressBar.this) {
-                final int count = mRefreshData.size();
-                for (int i = 0; i < count; i++) {
-                    doRefreshProgress(mRefreshData.get(i));
-                }
-                mRefreshData.clear();
-                mRefreshIsPosted = false;
+            final long bits = mRefreshMailbox.take();
+            if (bits != ProgressMailbox.EMPTY) {
+                doRefreshProgress(Double.longBitsToDouble(bits));
             }
         }
     }
 
-    private synchronized void doRefreshProgress(int progress) {
-        int range = mMax - mMin;
-        final float scale = range > 0 ? (progress - mMin) / (float)range : 0;
-        mDrawable.setProgress(scale);
+    private void doRefreshProgress(double fraction) {
+        mDrawable.setProgress((float)fraction);
+        scheduleAccessibilityEvent(fraction);
 
-        startAnimation();
+        // A running drawable picks the new progress up on its next frame.
+        if (!mDrawable.isRunning()) {
+            startAnimation();
+        }
+    }
+
+    private void refreshProgress(long progress) {
+        // Computed in double precision, so that the full long range keeps its precision.
+        final double range = (double)mMax - mMin;
+        refreshFraction(range > 0 ? ((double)progress - mMin) / range : 0);
     }
 
-    private synchronized void refreshProgress(int progress) {
+    private void refreshFraction(double fraction) {
         if (mUiThreadId == Thread.currentThread().getId()) {
-            doRefreshProgress(progress);
+            doRefreshProgress(fraction);
         } else {
-            if (mRefreshProgressRunnable == null) {
-                mRefreshProgressRunnable = new RefreshProgressRunnable();
+            // Only the latest value is kept, and it is delivered on the next animation frame.
+            // Fractions are never -0.0, whose bits are the mailbox empty marker.
+            mRefreshMailbox.put(Double.doubleToRawLongBits(fraction), false);
+            // Read after storing: onAttachedToWindow marks the bar attached before draining
+            // the mailbox, so either it picks this value up or the value is posted here.
+            final boolean post = mAttached && mRefreshMailbox.schedule();
+            if (post) {
+                ViewCompat.postOnAnimation(this, mRefreshProgressRunnable);
             }
 
-            mRefreshData.add(progress);
-            if (mAttached && !mRefreshIsPosted) {
-                post(mRefreshProgressRunnable);
-                mRefreshIsPosted = true;
+            final ProgressMetrics metrics = mMetrics;
+            if (metrics != null) {
+                metrics.recordRefresh(post);
             }
         }
     }
@@ -358,6 +679,21 @@ public final class UnifiedCircularProgressBar extends View {
      * @see #incrementProgressBy(int)
      */
     public synchronized void setProgress(int progress) {
+        setProgress((long)progress);
+    }
+
+    /**
+     * Sets the current progress to the specified value, for ranges exceeding
+     * the {@code int} range, e.g. byte counts of large transfers.
+     * This method will animate the visual position to the target value.
+     *
+     * @param progress the new progress, between {@link #getMinLong()} and {@link #getMaxLong()}
+     *
+     * @see #setMin(long)
+     * @see #setMax(long)
+     * @see #getProgressLong()
+     */
+    public synchronized void setProgress(long progress) {
         progress = constrain(progress, mMin, mMax);
 
         if (progress == mProgress && !mIndeterminate) {
@@ -369,15 +705,38 @@ public final class UnifiedCircularProgressBar extends View {
         refreshProgress(mProgress);
     }
 
-    private static int constrain(int amount, int low, int high) {
+    /**
+     * Sets the current progress as a fraction of the range, and passes it to the
+     * drawable as is. {@link #getProgress()} then returns the nearest value in the range.
+     * This method will animate the visual position to the target value.
+     *
+     * @param fraction the new progress, between 0 and 1
+     *
+     * @see #setIndeterminate(boolean)
+     * @see #getProgressLong()
+     */
+    public synchronized void setProgressFraction(double fraction) {
+        fraction = fraction > 0 ? (fraction < 1 ? fraction : 1) : 0;
+
+        mProgress = constrain(mMin + Math.round(fraction * ((double)mMax - mMin)), mMin, mMax);
+        mIndeterminate = false;
+        refreshFraction(fraction);
+    }
+
+    private static long constrain(long amount, long low, long high) {
         return amount < low ? low : (amount > high ? high : amount);
     }
 
+    private static int saturatedCast(long value) {
+        return (int)constrain(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
     /**
      * <p>Get the progress bar's current level of progress.
      * Returns 0 when the progress bar is in indeterminate mode.</p>
      *
-     * @return the current progress, between {@link #getMin()} and {@link #getMax()}
+     * @return the current progress, between {@link #getMin()} and {@link #getMax()},
+     * saturated to the {@code int} range
      *
      * @see #setIndeterminate(boolean)
      * @see #isIndeterminate()
@@ -386,35 +745,70 @@ public final class UnifiedCircularProgressBar extends View {
      * @see #getMax()
      * @see #setMin(int)
      * @see #getMin()
+     * @see #getProgressLong()
      */
     @ViewDebug.ExportedProperty(category = "progress")
     public synchronized int getProgress() {
+        return saturatedCast(getProgressLong());
+    }
+
+    /**
+     * <p>Get the progress bar's current level of progress.
+     * Returns 0 when the progress bar is in indeterminate mode.</p>
+     *
+     * @return the current progress, between {@link #getMinLong()} and {@link #getMaxLong()}
+     *
+     * @see #setProgress(long)
+     */
+    public synchronized long getProgressLong() {
         return mIndeterminate ? 0 : mProgress;
     }
 
     /**
      * <p>Return the lower limit of this progress bar's range.</p>
      *
-     * @return a positive integer
+     * @return a positive integer, saturated to the {@code int} range
      *
      * @see #setMin(int)
      * @see #getProgress()
      */
     @ViewDebug.ExportedProperty(category = "progress")
     public synchronized int getMin() {
+        return saturatedCast(mMin);
+    }
+
+    /**
+     * <p>Return the lower limit of this progress bar's range.</p>
+     *
+     * @return the lower limit
+     *
+     * @see #setMin(long)
+     */
+    public synchronized long getMinLong() {
         return mMin;
     }
 
     /**
      * <p>Return the upper limit of this progress bar's range.</p>
      *
-     * @return a positive integer
+     * @return a positive integer, saturated to the {@code int} range
      *
      * @see #setMax(int)
      * @see #getProgress()
      */
     @ViewDebug.ExportedProperty(category = "progress")
     public synchronized int getMax() {
+        return saturatedCast(mMax);
+    }
+
+    /**
+     * <p>Return the upper limit of this progress bar's range.</p>
+     *
+     * @return the upper limit
+     *
+     * @see #setMax(long)
+     */
+    public synchronized long getMaxLong() {
         return mMax;
     }
 
@@ -427,6 +821,18 @@ public final class UnifiedCircularProgressBar extends View {
      * @see #setProgress(int)
      */
     public synchronized void setMin(int min) {
+        setMin((long)min);
+    }
+
+    /**
+     * <p>Set the lower range of the progress bar to <tt>min</tt>.</p>
+     *
+     * @param min the lower range of this progress bar
+     *
+     * @see #getMinLong()
+     * @see #setProgress(long)
+     */
+    public synchronized void setMin(long min) {
         if (mMaxInitialized) {
             if (min > mMax) {
                 min = mMax;
@@ -454,6 +860,18 @@ public final class UnifiedCircularProgressBar extends View {
      * @see #setProgress(int)
      */
     public synchronized void setMax(int max) {
+        setMax((long)max);
+    }
+
+    /**
+     * <p>Set the upper range of the progress bar <tt>max</tt>.</p>
+     *
+     * @param max the upper range of this progress bar
+     *
+     * @see #getMaxLong()
+     * @see #setProgress(long)
+     */
+    public synchronized void setMax(long max) {
         if (mMinInitialized) {
             if (max < mMin) {
                 max = mMin;
@@ -483,6 +901,17 @@ public final class UnifiedCircularProgressBar extends View {
         setProgress(mProgress + diff);
     }
 
+    /**
+     * <p>Increase the progress bar's progress by the specified amount.</p>
+     *
+     * @param diff the amount by which the progress must be increased
+     *
+     * @see #setProgress(long)
+     */
+    public synchronized final void incrementProgressBy(long diff) {
+        setProgress(mProgress + diff);
+    }
+
     /**
      * <p>Start the progress animation.</p>
      */
@@ -512,9 +941,16 @@ public final class UnifiedCircularProgressBar extends View {
 
             // let's be nice with the UI thread
             if (isVisible) {
+                mDrawable.updateFrameRatePolicy(getContext());
+                updateAnimationSuspended();
                 startAnimation();
+            } else if (isShown()) {
+                // Still shown, so the window is hidden or the view is being detached: keep the
+                // animation phase, like onDetachedFromWindow does.
+                updateAnimationSuspended();
             } else {
                 stopAnimation();
+                updateAnimationSuspended();
             }
             mDrawable.setVisible(isVisible, false);
         }
@@ -523,12 +959,19 @@ public final class UnifiedCircularProgressBar extends View {
     @Override
     public void invalidateDrawable(@NonNull Drawable dr) {
         if (verifyDrawable(dr)) {
-            final Rect dirty = dr.getBounds();
-            final int scrollX = getScrollX() + getPaddingLeft();
+            final Rect dirty = dr.getDirtyBounds();
             final int scrollY = getScrollY() + getPaddingTop();
 
-            invalidate(dirty.left + scrollX, dirty.top + scrollY,
-                       dirty.right + scrollX, dirty.bottom + scrollY);
+            if (isLayoutRtl() && mMirrorForRtl) {
+                // onDraw mirrors the drawable around the right padding edge.
+                final int scrollX = getScrollX() + getWidth() - getPaddingRight();
+                invalidate(scrollX - dirty.right, dirty.top + scrollY,
+                           scrollX - dirty.left, dirty.bottom + scrollY);
+            } else {
+                final int scrollX = getScrollX() + getPaddingLeft();
+                invalidate(dirty.left + scrollX, dirty.top + scrollY,
+                           dirty.right + scrollX, dirty.bottom + scrollY);
+            }
         } else {
             super.invalidateDrawable(dr);
         }
@@ -576,7 +1019,7 @@ public final class UnifiedCircularProgressBar extends View {
     }
 
     @Override
-    protected synchronized void onDraw(Canvas canvas) {
+    protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
         final UnifiedCircularProgressDrawable d = mDrawable;
@@ -600,7 +1043,7 @@ public final class UnifiedCircularProgressBar extends View {
     }
 
     @Override
-    protected synchronized void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int dw = 0;
         int dh = 0;
 
@@ -645,7 +1088,7 @@ public final class UnifiedCircularProgressBar extends View {
     }
 
     private static class SavedState extends BaseSavedState {
-        int progress;
+        long progress;
         boolean indeterminate;
         /**
          * Constructor called from {@link UnifiedCircularProgressBar#onSaveInstanceState()}
@@ -658,14 +1101,14 @@ public final class UnifiedCircularProgressBar extends View {
          */
         private SavedState(Parcel in) {
             super(in);
-            progress = in.readInt();
+            progress = in.readLong();
             indeterminate = in.readInt() != 0;
         }
 
         @Override
         public void writeToParcel(Parcel out, int flags) {
             super.writeToParcel(out, flags);
-            out.writeInt(progress);
+            out.writeLong(progress);
             out.writeInt(indeterminate ? 1 : 0);
         }
 
@@ -700,30 +1143,171 @@ public final class UnifiedCircularProgressBar extends View {
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        mDrawable.updateFrameRatePolicy(getContext());
         startAnimation();
-        if (mRefreshData != null) {
-            synchronized (this) {
-                final int count = mRefreshData.size();
-                for (int i = 0; i < count; i++) {
-                    doRefreshProgress(mRefreshData.get(i));
-                }
-                mRefreshData.clear();
-            }
-        }
+        // Mark as attached before draining the mailbox: a value stored by another thread
+        // which still saw the bar detached is picked up right here, and values stored
+        // from now on get posted.
         mAttached = true;
+        mRefreshProgressRunnable.run();
+        if (mRenderThreadAnimation) {
+            inflateRenderThreadDrawable();
+        }
+
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mViewportListener);
+        observer.addOnGlobalLayoutListener(mViewportListener);
+        updateAnimationSuspended();
     }
 
     @Override
     protected void onDetachedFromWindow() {
-        stopAnimation();
-        if (mRefreshProgressRunnable != null) {
-            removeCallbacks(mRefreshProgressRunnable);
-            mRefreshIsPosted = false;
+        // The animation is suspended rather than stopped, so that it resumes where
+        // it would be if attached again.
+        mAttached = false;
+        updateAnimationSuspended();
+        removeCallbacks(mRefreshProgressRunnable);
+        removeCallbacks(mAccessibilityEventSender);
+        mAccessibilityEventScheduled = false;
+        mRefreshMailbox.unschedule();
+
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(mViewportListener);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(mViewportListener);
+        } else {
+            observer.removeGlobalOnLayoutListener(mViewportListener);
         }
-        // This should come after stopAnimation(), otherwise an invalidate message remains in the
-        // queue, which can prevent the entire view hierarchy from being GC'ed during a rotation
         super.onDetachedFromWindow();
-        mAttached = false;
+    }
+
+    /**
+     * <p>Indicate whether the animation is suspended, because the progress bar is detached,
+     * in a hidden window, scrolled out of view or was reported as occluded.</p>
+     *
+     * @return true if the animation is suspended
+     */
+    public boolean isAnimationSuspended() {
+        return mDrawable.isAnimationSuspended();
+    }
+
+    /**
+     * <p>Suspend the animation while the progress bar is covered by other views, which it
+     * cannot detect by itself. The animation is also suspended automatically while the
+     * progress bar is detached or entirely clipped out of its scrolling parents.
+     * On resume the animation jumps to where it would be had it kept running.</p>
+     *
+     * @param suspended true if the progress bar is occluded
+     */
+    public void setAnimationSuspended(boolean suspended) {
+        mSuspendRequested = suspended;
+        updateAnimationSuspended();
+    }
+
+    private void updateAnimationSuspended() {
+        mDrawable.setAnimationSuspended(!mAttached || !mAggregatedIsVisible
+                || mClipped || mSuspendRequested);
+    }
+
+    /**
+     * Tracks whether the progress bar is clipped out of the window, e.g. by a scrolling parent.
+     */
+    private class ViewportListener implements ViewTreeObserver.OnScrollChangedListener,
+            ViewTreeObserver.OnGlobalLayoutListener {
+        @Override
+        public void onScrollChanged() {
+            updateClipped();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            updateClipped();
+        }
+
+        private void updateClipped() {
+            final boolean clipped = !getGlobalVisibleRect(mVisibleRect);
+            if (mClipped != clipped) {
+                mClipped = clipped;
+                updateAnimationSuspended();
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the minimum interval between two accessibility progress events.</p>
+     *
+     * @return the interval, in milliseconds
+     */
+    public int getAccessibilityEventInterval() {
+        return mAccessibilityEventInterval;
+    }
+
+    /**
+     * <p>Progress changes are reported to accessibility services at most once per interval,
+     * and only when the progress changed by at least one percent, so that frequent updates do
+     * not flood them. The default is one second.</p>
+     *
+     * @param interval the minimum interval between two events, in milliseconds
+     */
+    public void setAccessibilityEventInterval(int interval) {
+        mAccessibilityEventInterval = interval;
+    }
+
+    /**
+     * Coalesces progress changes into one accessibility event per interval.
+     * Must be called from the UI thread.
+     */
+    private void scheduleAccessibilityEvent(double fraction) {
+        mAccessibilityFraction = fraction;
+        if (mAccessibilityEventScheduled || !mAttached) return;
+
+        final AccessibilityManager manager =
+                (AccessibilityManager)getContext().getSystemService(Context.ACCESSIBILITY_SERVICE);
+        if (manager == null || !manager.isEnabled()) return;
+
+        final long delay = mLastAccessibilityEventTime + mAccessibilityEventInterval
+                - SystemClock.uptimeMillis();
+        mAccessibilityEventScheduled = true;
+        postDelayed(mAccessibilityEventSender, delay > 0 ? delay : 0);
+    }
+
+    private void sendProgressAccessibilityEvent() {
+        mAccessibilityEventScheduled = false;
+
+        final double fraction = mAccessibilityFraction;
+        if (Math.abs(fraction - mLastAccessibilityFraction) < ACCESSIBILITY_EVENT_STEP
+                && !(fraction == 1 && mLastAccessibilityFraction != 1)) {
+            return;
+        }
+        mLastAccessibilityFraction = fraction;
+        mLastAccessibilityEventTime = SystemClock.uptimeMillis();
+        sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+    }
+
+    @Override
+    public CharSequence getAccessibilityClassName() {
+        return ProgressBar.class.getName();
+    }
+
+    @Override
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+        event.setClassName(ProgressBar.class.getName());
+        if (!isIndeterminate()) {
+            event.setItemCount(saturatedCast(getMaxLong() - getMinLong()));
+            event.setCurrentItemIndex(saturatedCast(getProgressLong() - getMinLong()));
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClassName(ProgressBar.class.getName());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && !isIndeterminate()) {
+            info.setRangeInfo(AccessibilityNodeInfo.RangeInfo.obtain(
+                    AccessibilityNodeInfo.RangeInfo.RANGE_TYPE_INT,
+                    getMinLong(), getMaxLong(), getProgressLong()));
+        }
     }
 
     /**
@@ -753,21 +1337,4 @@ public final class UnifiedCircularProgressBar extends View {
             return false;
         }
     }
-
-    /**
-     * Parses a {@link android.graphics.PorterDuff.Mode} from a tintMode
-     * attribute's enum value.
-     *
-     */
-    private static PorterDuff.Mode parseTintMode(int value, PorterDuff.Mode defaultMode) {
-        switch (value) {
-            case 3: return PorterDuff.Mode.SRC_OVER;
-            case 5: return PorterDuff.Mode.SRC_IN;
-            case 9: return PorterDuff.Mode.SRC_ATOP;
-            case 14: return PorterDuff.Mode.MULTIPLY;
-            case 15: return PorterDuff.Mode.SCREEN;
-            case 16: return PorterDuff.Mode.ADD;
-            default: return defaultMode;
-        }
-    }
 }
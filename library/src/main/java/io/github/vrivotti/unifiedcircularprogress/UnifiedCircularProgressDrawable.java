@@ -1,14 +1,11 @@
 package io.github.vrivotti.unifiedcircularprogress;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.Keyframe;
-import android.animation.PropertyValuesHolder;
-import android.animation.ValueAnimator;
+import android.content.Context;
 import android.content.res.ColorStateList;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
@@ -16,11 +13,18 @@ import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Animatable;
+import android.graphics.drawable.AnimatedVectorDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.animation.AnimationUtils;
+
+import java.util.ArrayList;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import io.github.vrivotti.unifiedcircularprogress.core.RingModel;
+import io.github.vrivotti.unifiedcircularprogress.core.TimeSource;
 
 /**
  * A drawable that shows and animates as a circular progress.
@@ -29,44 +33,190 @@ import androidx.annotation.Nullable;
  *
  **/
 public final class UnifiedCircularProgressDrawable extends Drawable implements Animatable {
-    private static final float ANGULAR_EPSILON = 1 / 3600f;
+    private static final TimeSource ANIMATION_TIME = AnimationUtils::currentAnimationTimeMillis;
+
+    private static final int DEFAULT_POWER_SAVE_FRAME_RATE = 20;
+    // Tolerance on frame times, so that a 30fps cap does not fall to 20fps on 60Hz displays.
+    private static final long FRAME_INTERVAL_SLOP = 4;
 
-    private static final float BORDER_WIDTH = 4f;
-    private static final RectF RECT_BOUNDS = new RectF(-24, -24, 24, 24);
-    private static final RectF RECT_PROGRESS = new RectF(-19, -19, 19, 19);
+    static final float BORDER_WIDTH = 4f;
+    static final RectF RECT_BOUNDS = new RectF(-24, -24, 24, 24);
+    static final RectF RECT_PROGRESS = new RectF(-19, -19, 19, 19);
+
+    /**
+     * Segments split the circle into equal arcs.
+     *
+     * @see #setSegmentLayout(int)
+     */
+    public static final int SEGMENT_LAYOUT_ARCS = 0;
+
+    /**
+     * Segments are drawn as concentric tracks, the first one outermost.
+     *
+     * @see #setSegmentLayout(int)
+     */
+    public static final int SEGMENT_LAYOUT_TRACKS = 1;
+
+    private static final int MAX_SHARED_STATES = 8;
+    private static final ArrayList<RingState> sSharedStates = new ArrayList<>();
 
     private final RectF fBounds = new RectF();
-    private Paint mPaint = null;
 
-    private int mAlpha = 0xFF;
+    private RingState mState;
+    private boolean mMutated;
+    // A copy of the state's paint: drawables sharing a state may draw on different threads,
+    // each with its own alpha, color filter and stroke width.
+    private final Paint mPaint;
     private ColorFilter mColorFilter;
-    private ColorStateList mTintList;
-    private PorterDuff.Mode mTintMode = PorterDuff.Mode.SRC_IN;
     private PorterDuffColorFilter mTintFilter;
 
-    private ValueAnimator mRingPathStart;
-    private ValueAnimator mRingPathEnd;
-    private float ringStart = 0;
-    private float ringEnd = 0;
+    private final TimeSource mTimeSource;
+    private final RingModel mRing;
+
+    private float mDurationScale = 1f;
+    private boolean mPowerSave;
+    private int mPowerSaveGeneration;
+    private long mFrameInterval;
+    private long mLastFrameTime;
+
+    private float mPendingProgress;
+    private long mPendingProgressTime;
+    private boolean mProgressPending;
+    private long mLastRetargetTime;
 
-    private boolean mIndeterminate = true;
-    private float mProgress = 0;
-    private int mDuration = 1333;
-    private boolean mStarted;
+    private RingAtlas mAtlas;
+    private int mAtlasGeneration;
+    private final Matrix mAtlasMatrix = new Matrix();
+
+    // Arc and stroke in device space, computed when the bounds or the thickness change.
+    private final RectF mArcRect = new RectF();
+    private float mArcStrokeWidth;
+    private float mArcThickness;
+
+    private final Rect mDrawnBounds = new Rect();
+    private final Rect mDirtyBounds = new Rect();
+    private final RectF mArcBounds = new RectF();
+    private boolean mArcDirty;
+
+    private RenderThreadRing mRenderThreadRing;
+    private boolean mHardwareCanvas;
+    private long mLastCycleStartTime;
+
+    private ProgressMetrics mMetrics;
+    private long mLastSetupCount;
+
+    private RingSegments mSegments;
+    private boolean mSuspended;
+    private int mSegmentLayout = SEGMENT_LAYOUT_ARCS;
 
     public UnifiedCircularProgressDrawable() {
-        setupIndeterminateAnimators();
+        this(new RingState(), ANIMATION_TIME);
+    }
+
+    /**
+     * Creates a drawable animating on the given timeline instead of the animation clock,
+     * for offscreen rendering.
+     */
+    UnifiedCircularProgressDrawable(TimeSource timeSource) {
+        this(new RingState(), timeSource);
+    }
+
+    private UnifiedCircularProgressDrawable(RingState state) {
+        this(state, ANIMATION_TIME);
+    }
+
+    private UnifiedCircularProgressDrawable(RingState state, TimeSource timeSource) {
+        mState = state;
+        mPaint = new Paint(state.mPaint);
+        mTimeSource = timeSource;
+        mRing = new RingModel(timeSource);
+        mRing.setDuration(state.mDuration);
+        mRing.setSmoothingEnabled(state.mProgressSmoothing);
+        updateTintFilter();
+        updateFrameInterval();
+    }
+
+    /**
+     * Returns a drawable sharing its constant state with other drawables created
+     * with the same tint, as long as none of them is mutated.
+     */
+    static UnifiedCircularProgressDrawable obtainShared(@Nullable ColorStateList tint,
+                                                        @Nullable PorterDuff.Mode tintMode) {
+        if (tint != null && tint.isStateful()) {
+            return new UnifiedCircularProgressDrawable();
+        }
+
+        synchronized (sSharedStates) {
+            for (int i = 0, count = sSharedStates.size(); i < count; i++) {
+                final RingState state = sSharedStates.get(i);
+                if (state.hasTint(tint, tintMode)) {
+                    return new UnifiedCircularProgressDrawable(state);
+                }
+            }
+
+            final RingState state = new RingState();
+            state.mTintList = tint;
+            state.mTintMode = tintMode;
+            if (sSharedStates.size() >= MAX_SHARED_STATES) {
+                sSharedStates.remove(0);
+            }
+            sSharedStates.add(state);
+            return new UnifiedCircularProgressDrawable(state);
+        }
+    }
+
+    /**
+     * Indicates whether this drawable is tinted with the given tint.
+     * Tints that are not stateful are compared by color.
+     */
+    boolean hasTint(@Nullable ColorStateList tint, @Nullable PorterDuff.Mode tintMode) {
+        return mState.hasTint(tint, tintMode);
+    }
+
+    @Nullable
+    ColorStateList getTintList() {
+        return mState.mTintList;
+    }
+
+    @Nullable
+    PorterDuff.Mode getTintMode() {
+        return mState.mTintMode;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        mState.mChangingConfigurations = getChangingConfigurations();
+        return mState;
+    }
+
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        if (!mMutated && super.mutate() == this) {
+            mState = new RingState(mState);
+            mMutated = true;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the state to write a configuration change into. The change only applies to this
+     * drawable: a state shared with other drawables is copied first.
+     */
+    private RingState editState() {
+        mutate();
+        return mState;
     }
 
     @Override
     public int getAlpha() {
-        return mAlpha;
+        return mState.mAlpha;
     }
 
     @Override
     public void setAlpha(int alpha) {
-        if (mAlpha != alpha) {
-            mAlpha = alpha;
+        if (mState.mAlpha != alpha) {
+            editState().mAlpha = alpha;
             invalidateSelf();
         }
     }
@@ -78,7 +228,9 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
 
     @Override
     public void setTintList(@Nullable ColorStateList tint) {
-        mTintList = tint;
+        if (mState.mTintList == tint) return;
+
+        editState().mTintList = tint;
         if (updateTintFilter()) {
             invalidateSelf();
         }
@@ -86,7 +238,9 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
 
     @Override
     public void setTintMode(@NonNull PorterDuff.Mode tintMode) {
-        mTintMode = tintMode;
+        if (mState.mTintMode == tintMode) return;
+
+        editState().mTintMode = tintMode;
         if (updateTintFilter()) {
             invalidateSelf();
         }
@@ -94,7 +248,7 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
 
     @Override
     public boolean isStateful() {
-        return mTintList != null && mTintList.isStateful();
+        return mState.mTintList != null && mState.mTintList.isStateful();
     }
 
     @Override
@@ -103,16 +257,21 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
     }
 
     private boolean updateTintFilter() {
+        final ColorStateList tintList = mState.mTintList;
+        final PorterDuff.Mode tintMode = mState.mTintMode;
 
-        if (mTintList == null || mTintMode == null) {
+        if (tintList == null || tintMode == null) {
             boolean hadTintFilter = mTintFilter != null;
             mTintFilter = null;
             return hadTintFilter;
         }
 
-        int tintColor = mTintList.getColorForState(getState(), Color.TRANSPARENT);
-        // They made PorterDuffColorFilter.setColor() and setMode() @hide.
-        mTintFilter = new PorterDuffColorFilter(tintColor, mTintMode);
+        int tintColor = tintList.getColorForState(getState(), Color.TRANSPARENT);
+        final PorterDuffColorFilter tintFilter = TintFilterCache.obtain(tintColor, tintMode);
+        if (tintFilter == mTintFilter) {
+            return false;
+        }
+        mTintFilter = tintFilter;
         return true;
     }
 
@@ -138,7 +297,7 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @return int the animation duration
      */
     public int getDuration() {
-        return mDuration;
+        return mState.mDuration;
     }
 
     /**
@@ -149,7 +308,287 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @param duration animation duration
      */
     public void setDuration(int duration) {
-        this.mDuration = duration;
+        if (mState.mDuration == duration) return;
+
+        editState().mDuration = duration;
+        updateDuration();
+    }
+
+    private void updateDuration() {
+        final int baseDuration = mState.mDuration;
+        final int duration = mDurationScale > 0 ? (int)(baseDuration * mDurationScale) : baseDuration;
+        if (mRing.getDuration() != duration) {
+            leaveRenderThread();
+            mRing.setDuration(duration);
+            if (mSegments != null) {
+                mSegments.setDuration(duration);
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the maximum frame rate of the animation.</p>
+     *
+     * @return the frame rate cap, in frames per second, or 0 if there is none
+     */
+    public int getMaxFrameRate() {
+        return mState.mMaxFrameRate;
+    }
+
+    /**
+     * <p>Limit the frame rate of the animation, e.g. to 30 or 20 frames per second, to save
+     * power on long running animations.</p>
+     *
+     * @param frameRate the frame rate cap, in frames per second, or 0 to follow the display
+     */
+    public void setMaxFrameRate(int frameRate) {
+        if (mState.mMaxFrameRate == frameRate) return;
+
+        editState().mMaxFrameRate = frameRate;
+        updateFrameInterval();
+    }
+
+    /**
+     * <p>Gets the maximum frame rate of the animation while battery saver is on.</p>
+     *
+     * @return the frame rate cap under battery saver, in frames per second, or 0 if there is none
+     */
+    public int getPowerSaveMaxFrameRate() {
+        return mState.mPowerSaveMaxFrameRate;
+    }
+
+    /**
+     * <p>Limit the frame rate of the animation while battery saver is on.
+     * The default is 20 frames per second.</p>
+     *
+     * @param frameRate the frame rate cap under battery saver, in frames per second, or 0 to
+     *                  follow the display
+     * @see #updateFrameRatePolicy(Context)
+     */
+    public void setPowerSaveMaxFrameRate(int frameRate) {
+        if (mState.mPowerSaveMaxFrameRate == frameRate) return;
+
+        editState().mPowerSaveMaxFrameRate = frameRate;
+        updateFrameInterval();
+    }
+
+    /**
+     * <p>Reads the battery saver state and the animator duration scale from the system.
+     * Under battery saver the frame rate is limited to {@link #getPowerSaveMaxFrameRate()}.
+     * Later battery saver changes are picked up by running animations on their next frame.
+     * Animation durations follow the duration scale, and when animations are disabled the
+     * drawable renders a static frame instead of animating. Atlas frames, shared by all
+     * drawables, are dropped when the application runs low on memory.</p>
+     *
+     * @param context the context used to read the system settings
+     */
+    public void updateFrameRatePolicy(@NonNull Context context) {
+        // Registered once per process, before any host can enable the atlas.
+        RingAtlas.registerComponentCallbacks(context);
+        mPowerSaveGeneration = FrameRatePolicy.getPowerSaveGeneration();
+        mPowerSave = FrameRatePolicy.isPowerSaveMode(context);
+        updateFrameInterval();
+
+        final float durationScale = FrameRatePolicy.getDurationScale(context);
+        if (mDurationScale != durationScale) {
+            mDurationScale = durationScale;
+            updateDuration();
+
+            if (mSegments != null ? mSegments.isStarted() : mRing.isRunning()) {
+                if (durationScale == 0) {
+                    // Render a static frame from now on.
+                    stop();
+                    start();
+                } else {
+                    scheduleFrames();
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the minimum interval between two progress retargets.</p>
+     *
+     * @return the minimum retarget interval, in milliseconds
+     */
+    public int getMinRetargetInterval() {
+        return mState.mMinRetargetInterval;
+    }
+
+    /**
+     * <p>Progress updates are applied at most once per frame, only the latest one counts.
+     * This further limits how often the ring retargets, e.g. to keep a steady motion when the
+     * progress is updated very often.</p>
+     *
+     * @param interval the minimum retarget interval, in milliseconds, or 0 to retarget on
+     *                 every frame
+     */
+    public void setMinRetargetInterval(int interval) {
+        if (mState.mMinRetargetInterval != interval) {
+            editState().mMinRetargetInterval = interval;
+        }
+    }
+
+    /**
+     * <p>Indicate whether determinate progress is paced by the rate it is reported at.</p>
+     *
+     * @return true if progress smoothing is enabled
+     */
+    public boolean isProgressSmoothingEnabled() {
+        return mState.mProgressSmoothing;
+    }
+
+    /**
+     * <p>Pace the ring by the estimated progress throughput, so that sparse progress updates
+     * give a continuous motion instead of a jump followed by a stall. The ring never goes past
+     * the last reported progress.</p>
+     *
+     * @param enabled true to enable progress smoothing
+     */
+    public void setProgressSmoothingEnabled(boolean enabled) {
+        if (mState.mProgressSmoothing == enabled) return;
+
+        editState().mProgressSmoothing = enabled;
+        mRing.setSmoothingEnabled(enabled);
+        if (mSegments != null) {
+            mSegments.setSmoothingEnabled(enabled);
+        }
+    }
+
+    /**
+     * <p>Gets the number of segments.</p>
+     *
+     * @return the number of segments, or 0 if the drawable shows a single ring
+     */
+    public int getSegmentCount() {
+        return mSegments != null ? mSegments.getCount() : 0;
+    }
+
+    /**
+     * <p>Split the ring into segments, each one showing its own progress, e.g. one per
+     * concurrent task. Segments are animated together and drawn in a single pass. Each one
+     * starts in indeterminate mode, and transitions smoothly between modes like a single ring.
+     * The progress of the drawable itself is not shown while segments are.</p>
+     *
+     * @param count the number of segments, or 0 to show a single ring
+     *
+     * @see #setSegmentLayout(int)
+     * @see #setSegmentProgress(int, float)
+     * @see #setSegmentIndeterminate(int, boolean)
+     */
+    public void setSegmentCount(int count) {
+        if (count < 0) count = 0;
+        if (count == getSegmentCount()) return;
+
+        final boolean started = mSegments != null ? mSegments.isStarted() : mRing.isRunning();
+        stop();
+
+        if (count > 0) {
+            mSegments = new RingSegments(count, mSegmentLayout, mTimeSource);
+            mSegments.setDuration(mRing.getDuration());
+            mSegments.setSmoothingEnabled(mState.mProgressSmoothing);
+            mSegments.setGeometry(fBounds.width(), fBounds.height(), mArcThickness);
+        } else {
+            mSegments = null;
+        }
+
+        if (started) {
+            start();
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * <p>Gets how segments are laid out.</p>
+     *
+     * @return {@link #SEGMENT_LAYOUT_ARCS} or {@link #SEGMENT_LAYOUT_TRACKS}
+     */
+    public int getSegmentLayout() {
+        return mSegmentLayout;
+    }
+
+    /**
+     * <p>Change how segments are laid out: as arcs splitting the circle, or as
+     * concentric tracks.</p>
+     *
+     * @param layout {@link #SEGMENT_LAYOUT_ARCS} or {@link #SEGMENT_LAYOUT_TRACKS}
+     */
+    public void setSegmentLayout(int layout) {
+        if (mSegmentLayout != layout) {
+            mSegmentLayout = layout;
+            if (mSegments != null) {
+                mSegments.setLayout(layout);
+                invalidateSelf();
+            }
+        }
+    }
+
+    /**
+     * <p>Indicate whether a segment is in indeterminate mode.</p>
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @return true if the segment is in indeterminate mode
+     */
+    public boolean isSegmentIndeterminate(int index) {
+        return getSegment(index).isIndeterminate();
+    }
+
+    /**
+     * <p>Change the indeterminate mode of a segment.</p>
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @param indeterminate true to enable the indeterminate mode
+     */
+    public void setSegmentIndeterminate(int index, boolean indeterminate) {
+        final RingModel segment = getSegment(index);
+        segment.setIndeterminate(indeterminate);
+        onSegmentChanged(segment);
+    }
+
+    /**
+     * <p>Get the amount of progress of a segment.</p>
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @return the current progress, between 0 and 1
+     */
+    public float getSegmentProgress(int index) {
+        return getSegment(index).getProgress();
+    }
+
+    /**
+     * Sets the amount of progress of a segment, animating it to the target value.
+     *
+     * @param index the segment index, lower than {@link #getSegmentCount()}
+     * @param progress the new amount of progress, between 0 and 1
+     */
+    public void setSegmentProgress(int index, float progress) {
+        final RingModel segment = getSegment(index);
+        segment.setProgress(progress);
+        onSegmentChanged(segment);
+    }
+
+    private RingModel getSegment(int index) {
+        if (mSegments == null || index < 0 || index >= mSegments.getCount()) {
+            throw new IndexOutOfBoundsException("Segment " + index + " out of " + getSegmentCount());
+        }
+        return mSegments.get(index);
+    }
+
+    private void onSegmentChanged(RingModel segment) {
+        if (mSegments.isStarted()) {
+            segment.start(mTimeSource.now());
+            scheduleFrames();
+        }
+    }
+
+    private void updateFrameInterval() {
+        final int powerSaveFrameRate = mState.mPowerSaveMaxFrameRate;
+        int frameRate = mState.mMaxFrameRate;
+        if (mPowerSave && powerSaveFrameRate > 0
+                && (frameRate == 0 || powerSaveFrameRate < frameRate)) {
+            frameRate = powerSaveFrameRate;
+        }
+        mFrameInterval = frameRate > 0 ? 1000 / frameRate : 0;
     }
 
     /**
@@ -158,7 +597,7 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @return true if the progress drawable is in indeterminate mode
      */
     public boolean isIndeterminate() {
-        return mIndeterminate;
+        return mRing.isIndeterminate();
     }
 
     /**
@@ -170,17 +609,10 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      */
     public void setIndeterminate(boolean indeterminate) {
         if (!indeterminate) {
-            setProgress(mProgress);
-            return;
-        }
-        if (!mIndeterminate) {
-            mIndeterminate = true;
-
-            reduceAngles();
-            if (ringStart < ANGULAR_EPSILON) {
-                setupIndeterminateAnimators();
-            }
+            leaveRenderThread();
         }
+        flushPendingProgress(mTimeSource.now());
+        mRing.setIndeterminate(indeterminate);
     }
 
     /**
@@ -191,62 +623,438 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @see #setProgress(float)
      */
     public float getProgress() {
-        return mProgress;
+        return mProgressPending ? mPendingProgress : mRing.getProgress();
     }
 
     /**
      * Sets the current amount of progress to the specified value.
      * <p>
      * This method will animate the visual position to the target value.
+     * Updates are coalesced: the ring retargets at most once per frame, to the latest value.
      *
      * @param progress the new amount of progress, between 0 and 1
      *
      * @see #setIndeterminate(boolean)
      * @see #isIndeterminate()
      * @see #getProgress()
+     * @see #setMinRetargetInterval(int)
      */
     public void setProgress(float progress) {
-        mProgress = progress;
-        mIndeterminate = false;
+        if (mRing.isIndeterminate()) {
+            // Leaving the indeterminate mode is not deferred.
+            leaveRenderThread();
+            mProgressPending = false;
+            mRing.setProgress(progress);
+            mLastRetargetTime = mTimeSource.now();
+            return;
+        }
+
+        mPendingProgress = progress;
+        // The rate of progress is estimated from report times, not from retarget times.
+        mPendingProgressTime = mTimeSource.now();
+        mProgressPending = true;
+    }
+
+    /**
+     * Retargets the ring to the latest progress update, if it has not been applied yet.
+     */
+    private void flushPendingProgress(long time) {
+        if (mProgressPending) {
+            mProgressPending = false;
+            mRing.setProgress(mPendingProgress, mPendingProgressTime);
+            mLastRetargetTime = time;
+        }
+    }
+
+    /**
+     * <p>Gets the thickness of the ring.</p>
+     *
+     * @return the stroke width, in units of the 48x48 ring viewport
+     */
+    public float getThickness() {
+        return mState.mThickness;
+    }
 
-        setupDeterminateAnimators();
+    /**
+     * <p>Set the thickness of the ring, in units of the 48x48 ring viewport, so that it scales
+     * with the drawable. The outer edge of the ring stays in place. Default is 4.</p>
+     *
+     * @param thickness the stroke width, between 0 and 24
+     */
+    public void setThickness(float thickness) {
+        thickness = Math.max(0, Math.min(thickness, RECT_BOUNDS.width() / 2));
+        if (mState.mThickness != thickness) {
+            editState().mThickness = thickness;
+            updateGeometry();
+            mAtlas = null;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * <p>Indicate whether the indeterminate animation is drawn from a pre-rendered atlas.</p>
+     *
+     * @return true if the atlas is enabled
+     */
+    public boolean isAtlasEnabled() {
+        return mState.mAtlasEnabled;
+    }
+
+    /**
+     * <p>Draw the indeterminate animation from pre-rendered frames instead of stroking the arc
+     * on every frame. Frames are rendered once per pixel size and shared between drawables.
+     * Determinate progress is always drawn live.</p>
+     *
+     * @param enabled true to enable the atlas
+     */
+    public void setAtlasEnabled(boolean enabled) {
+        if (mState.mAtlasEnabled != enabled) {
+            editState().mAtlasEnabled = enabled;
+            mAtlas = null;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * <p>Gets the metrics this drawable records into.</p>
+     *
+     * @return the metrics, or null if none are recorded
+     */
+    @Nullable
+    public ProgressMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * <p>Record draw times, frame counts and animation rebuilds into the given metrics.
+     * Recording allocates nothing.</p>
+     *
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(@Nullable ProgressMetrics metrics) {
+        mMetrics = metrics;
+        mLastSetupCount = mRing.getSetupCount();
     }
 
     @Override
     public void draw(@NonNull Canvas canvas) {
+        final ProgressMetrics metrics = mMetrics;
+        if (metrics == null) {
+            drawFrame(canvas);
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        drawFrame(canvas);
+        metrics.recordDraw(System.nanoTime() - startTime);
+    }
+
+    private void drawFrame(Canvas canvas) {
         if (fBounds.width() == 0 || fBounds.height() == 0) {
             return;
         }
 
-        int saveCount = canvas.save();
+        final Paint paint = mPaint;
+        paint.setAlpha(mState.mAlpha);
+        paint.setColorFilter(mColorFilter != null ? mColorFilter : mTintFilter);
+        mHardwareCanvas = canvas.isHardwareAccelerated();
+
+        if (mArcThickness != mState.mThickness) {
+            // The thickness of a shared state changed.
+            updateGeometry();
+        }
+
+        if (mSegments != null) {
+            mDrawnBounds.set(0, 0, (int)fBounds.width(), (int)fBounds.height());
+            mSegments.draw(canvas, paint);
+            return;
+        }
+
+        if (mRenderThreadRing != null && mRenderThreadRing.isActive()) {
+            mDrawnBounds.set(0, 0, (int)fBounds.width(), (int)fBounds.height());
+            mRenderThreadRing.draw(canvas, (int)fBounds.width(), (int)fBounds.height(),
+                                   mState.mAlpha, paint.getColorFilter());
+            return;
+        }
+
+        float ringStart = mRing.getRingStart();
+        float sweep = mRing.getRingEnd() - ringStart;
+        getArcBounds(mDrawnBounds);
+
+        final RingAtlas atlas = mRing.isIndeterminate() ? getAtlas() : null;
+        if (atlas != null) {
+            // Frames only cover the sweeps, from the top: the ring start is a rotation.
+            mAtlasMatrix.setRotate(360 * ringStart, fBounds.width() / 2, fBounds.height() / 2);
+            canvas.drawBitmap(atlas.getFrame(sweep), mAtlasMatrix, paint);
+        } else {
+            paint.setStrokeWidth(mArcStrokeWidth);
+            canvas.drawArc(mArcRect, 360 * ringStart - 90, 360 * sweep, false, paint);
+        }
+    }
+
+    private RingAtlas getAtlas() {
+        if (!mState.mAtlasEnabled) {
+            return null;
+        }
 
-        canvas.scale(fBounds.width() / RECT_BOUNDS.width(), fBounds.height() / RECT_BOUNDS.height());
-        canvas.translate(RECT_BOUNDS.width() / 2, RECT_BOUNDS.height() / 2);
+        final int width = (int)fBounds.width();
+        final int height = (int)fBounds.height();
+        if (width > RingAtlas.MAX_FRAME_SIZE || height > RingAtlas.MAX_FRAME_SIZE) {
+            return null;
+        }
 
-        if (mPaint == null) {
-            mPaint = new Paint();
-            mPaint.setAntiAlias(true);
-            mPaint.setColor(Color.BLACK);
-            mPaint.setStyle(Paint.Style.STROKE);
-            mPaint.setStrokeWidth(BORDER_WIDTH);
-            mPaint.setStrokeJoin(Paint.Join.MITER);
-            mPaint.setStrokeCap(Paint.Cap.SQUARE);
+        final int generation = RingAtlas.getGeneration();
+        final float thickness = mState.mThickness;
+        if (mAtlas == null || mAtlasGeneration != generation || !mAtlas.matches(width, height, thickness)) {
+            mAtlas = RingAtlas.obtain(width, height, thickness);
+            mAtlasGeneration = generation;
         }
+        return mAtlas;
+    }
 
-        mPaint.setAlpha(mAlpha);
-        mPaint.setColorFilter(mColorFilter != null ? mColorFilter : mTintFilter);
+    static Paint createRingPaint(float strokeWidth) {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setFilterBitmap(true);
+        paint.setColor(Color.BLACK);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setStrokeJoin(Paint.Join.MITER);
+        paint.setStrokeCap(Paint.Cap.SQUARE);
+        return paint;
+    }
 
-        float startAngle = 360 * (ringStart) - 90;
-        float sweepAngle = 360 * (ringEnd - ringStart);
+    /**
+     * @return the radius of the stroke center line, in units of the ring viewport, keeping
+     * the outer edge of the ring in place whatever its thickness
+     */
+    static float getArcRadius(float thickness) {
+        return (RECT_PROGRESS.width() + BORDER_WIDTH - thickness) / 2;
+    }
 
-        canvas.drawArc(RECT_PROGRESS, startAngle, sweepAngle, false, mPaint);
-        canvas.restoreToCount(saveCount);
+    /**
+     * Computes the ring arc of a {@code width} x {@code height} area at the canvas origin,
+     * in device space.
+     *
+     * @param out receives the oval of the arc
+     * @return the stroke width, in pixels
+     */
+    static float computeArc(float width, float height, float thickness, RectF out) {
+        final float scaleX = width / RECT_BOUNDS.width();
+        final float scaleY = height / RECT_BOUNDS.height();
+        final float radius = getArcRadius(thickness);
+        out.set(width / 2 - radius * scaleX, height / 2 - radius * scaleY,
+                width / 2 + radius * scaleX, height / 2 + radius * scaleY);
+        // Strokes have a single width, the smallest scale keeps the ring within the bounds.
+        return thickness * Math.min(scaleX, scaleY);
+    }
 
-        if (mRingPathStart.isStarted()) {
+    private void updateGeometry() {
+        mArcThickness = mState.mThickness;
+        mArcStrokeWidth = computeArc(fBounds.width(), fBounds.height(), mArcThickness, mArcRect);
+        if (mSegments != null) {
+            mSegments.setGeometry(fBounds.width(), fBounds.height(), mArcThickness);
+        }
+    }
+
+    /**
+     * Called by {@link RingFrameClock} on every frame while the animation is running.
+     * Advances the ring and invalidates the drawable if it is visible.
+     *
+     * @param frameTime current frame time, in milliseconds
+     * @return true if the animation is still running
+     */
+    boolean doFrame(long frameTime) {
+        final int powerSaveGeneration = FrameRatePolicy.getPowerSaveGeneration();
+        if (mPowerSaveGeneration != powerSaveGeneration) {
+            mPowerSaveGeneration = powerSaveGeneration;
+            mPowerSave = FrameRatePolicy.isPowerSaveMode();
+            updateFrameInterval();
+        }
+
+        if (mFrameInterval > 0 && frameTime - mLastFrameTime < mFrameInterval - FRAME_INTERVAL_SLOP) {
+            // Skip this frame, the ring catches up on the next one.
+            if (mMetrics != null) {
+                mMetrics.recordFrameSkipped();
+            }
+            if (mSegments != null) {
+                return mSegments.isRunning();
+            }
+            return mRing.isRunning() || mProgressPending;
+        }
+        mLastFrameTime = frameTime;
+
+        if (mSegments != null) {
+            final boolean running = mSegments.advance(frameTime);
+            recordFrameMetrics(frameTime);
+            if (isVisible()) {
+                invalidateSelf();
+            }
+            return running;
+        }
+
+        if (mProgressPending && frameTime - mLastRetargetTime >= mState.mMinRetargetInterval) {
+            flushPendingProgress(frameTime);
+            mRing.start(frameTime);
+        }
+
+        boolean running = mRing.advance(frameTime);
+        recordFrameMetrics(frameTime);
+
+        if (running && enterRenderThread()) {
+            // The render thread animates from now on, no need for further frames.
+            invalidateSelf();
+            return false;
+        }
+
+        if (isVisible()) {
+            // Only the area covered by the arc before and after this frame needs redrawing.
+            getArcBounds(mDirtyBounds);
+            mDirtyBounds.union(mDrawnBounds);
+
+            mArcDirty = true;
             invalidateSelf();
+            mArcDirty = false;
+        }
+        return running || mProgressPending;
+    }
+
+    private void recordFrameMetrics(long frameTime) {
+        final ProgressMetrics metrics = mMetrics;
+        if (metrics != null) {
+            final long setupCount = mRing.getSetupCount();
+            metrics.recordAnimatorRebuilds(setupCount - mLastSetupCount);
+            mLastSetupCount = setupCount;
+            if (isVisible()) {
+                metrics.recordFrameExpected();
+            }
+            metrics.onFrame(frameTime);
         }
     }
 
+    /**
+     * Applies the latest progress and starts the ring at the given time, without registering
+     * with the frame clock. Used for offscreen rendering.
+     */
+    void startAt(long time) {
+        flushPendingProgress(time);
+        mRing.start(time);
+    }
+
+    /**
+     * Advances the ring to the given time, without the frame clock. Used for offscreen rendering.
+     */
+    void advanceTo(long time) {
+        mRing.advance(time);
+    }
+
+    /**
+     * Hands the animation over to the render thread ring, when available, at the first
+     * frame of a steady indeterminate cycle.
+     *
+     * @return true if the render thread ring has been started
+     */
+    private boolean enterRenderThread() {
+        final long cycleStartTime = mRing.getCycleStartTime();
+        final boolean newCycle = cycleStartTime != mLastCycleStartTime;
+        mLastCycleStartTime = cycleStartTime;
+
+        // The vector drawable has the default thickness.
+        if (mRenderThreadRing == null || !mHardwareCanvas || !newCycle
+                || !mRing.isSteadyCycle() || mRing.getDuration() != RingModel.DEFAULT_DURATION
+                || mState.mThickness != BORDER_WIDTH) {
+            return false;
+        }
+
+        mRenderThreadRing.start(360 * mRing.getCycleBase());
+        return true;
+    }
+
+    /**
+     * Stops the render thread ring, if playing, and brings the ring model to the
+     * current time so that the CPU driven animation continues from the same position.
+     */
+    private void leaveRenderThread() {
+        if (mRenderThreadRing == null || !mRenderThreadRing.isActive()) {
+            return;
+        }
+
+        mRenderThreadRing.stop();
+        mRing.advance(mTimeSource.now());
+        mLastCycleStartTime = mRing.getCycleStartTime();
+        if (mRing.isRunning()) {
+            scheduleFrames();
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * Sets the drawable playing the steady indeterminate cycle on the render thread,
+     * or null to always animate on the UI thread.
+     */
+    void setRenderThreadDrawable(@Nullable AnimatedVectorDrawable drawable) {
+        leaveRenderThread();
+        if (drawable != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1) {
+            mRenderThreadRing = new RenderThreadRing(this, drawable);
+        } else {
+            mRenderThreadRing = null;
+        }
+    }
+
+    /**
+     * Returns the area to redraw. While the ring is animating, this is limited to the
+     * area swept by the arc, in the coordinates the ring is drawn at.
+     */
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return mArcDirty ? mDirtyBounds : super.getDirtyBounds();
+    }
+
+    /**
+     * Computes the pixel bounding box of the arc at the current ring position,
+     * including the stroke and its caps.
+     */
+    private void getArcBounds(Rect out) {
+        final float ringStart = mRing.getRingStart();
+        final float sweep = mRing.getRingEnd() - ringStart;
+        final RectF arc = mArcBounds;
+
+        if (sweep >= 0.75f) {
+            arc.set(mArcRect);
+        } else {
+            final float radiusX = mArcRect.width() / 2;
+            final float radiusY = mArcRect.height() / 2;
+            final double quarter = Math.PI / 2;
+            final double startAngle = 2 * Math.PI * ringStart - quarter;
+            final double endAngle = startAngle + 2 * Math.PI * sweep;
+
+            float x = (float)Math.cos(startAngle) * radiusX;
+            float y = (float)Math.sin(startAngle) * radiusY;
+            arc.set(x, y, x, y);
+            arc.union((float)Math.cos(endAngle) * radiusX, (float)Math.sin(endAngle) * radiusY);
+
+            // Add the extreme points of the circle crossed by the arc.
+            for (long k = (long)Math.ceil(startAngle / quarter); k * quarter <= endAngle; k++) {
+                switch ((int)(k & 3)) {
+                    case 0: arc.union(radiusX, 0); break;
+                    case 1: arc.union(0, radiusY); break;
+                    case 2: arc.union(-radiusX, 0); break;
+                    default: arc.union(0, -radiusY); break;
+                }
+            }
+            arc.offset(mArcRect.centerX(), mArcRect.centerY());
+        }
+
+        // The square caps reach half a stroke diagonal past the arc ends, sqrt(2) / 2 rounded up.
+        final float capReach = mArcStrokeWidth * 0.7072f;
+        arc.inset(-capReach, -capReach);
+
+        // One more pixel for anti-aliasing.
+        arc.roundOut(out);
+        out.inset(-1, -1);
+    }
+
     /**
      * Starts the drawable's animation.
      *
@@ -254,15 +1062,102 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @see #isRunning()
      */
     public void start() {
-        if (mRingPathStart.isStarted()) return;
+        if (mSegments != null) {
+            startSegments();
+            return;
+        }
+        if (mRing.isRunning()) return;
 
-        mRingPathStart.start();
-        mRingPathEnd.start();
-        mStarted = true;
+        flushPendingProgress(mTimeSource.now());
+        mRing.start();
+        if (mDurationScale == 0) {
+            showStaticFrame();
+        } else {
+            scheduleFrames();
+        }
 
         invalidateSelf();
     }
 
+    private void startSegments() {
+        if (mSegments.isStarted()) return;
+
+        mSegments.start(mTimeSource.now());
+        if (mDurationScale == 0) {
+            // Segments show their targets, or the start of the indeterminate cycle.
+            mSegments.stop();
+        } else {
+            scheduleFrames();
+        }
+
+        invalidateSelf();
+    }
+
+    /**
+     * Registers with the frame clock, unless the animation is suspended.
+     */
+    private void scheduleFrames() {
+        if (!mSuspended) {
+            RingFrameClock.getInstance().add(this);
+        }
+    }
+
+    /**
+     * <p>Indicate whether the animation is suspended.</p>
+     *
+     * @return true if the animation is suspended
+     *
+     * @see #setAnimationSuspended(boolean)
+     */
+    public boolean isAnimationSuspended() {
+        return mSuspended;
+    }
+
+    /**
+     * <p>Suspend the animation while nobody can see it, e.g. when scrolled out of view or
+     * covered. No frames are requested while suspended, and the drawable is no longer referenced
+     * by the frame clock. On resume the animation jumps to where it would be had it kept
+     * running, so it does not visibly restart. Starting and stopping still work while
+     * suspended.</p>
+     *
+     * @param suspended true to suspend the animation, false to resume it
+     */
+    public void setAnimationSuspended(boolean suspended) {
+        if (mSuspended == suspended) return;
+        mSuspended = suspended;
+
+        if (suspended) {
+            leaveRenderThread();
+            RingFrameClock.getInstance().remove(this);
+            return;
+        }
+
+        // Catch up with the time spent suspended.
+        final long now = mTimeSource.now();
+        final boolean running;
+        if (mSegments != null) {
+            running = mSegments.advance(now);
+        } else {
+            running = mRing.advance(now) || mProgressPending;
+        }
+        if (running && mDurationScale != 0) {
+            scheduleFrames();
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * Shows the ring as it would be without animations: the determinate target, or
+     * a frozen frame of the indeterminate cycle showing a long arc.
+     */
+    private void showStaticFrame() {
+        if (mRing.isIndeterminate()) {
+            mRing.advance(mRing.getCycleStartTime() + mRing.getDuration() / 2);
+        } else {
+            mRing.stop();
+        }
+    }
+
     /**
      * Stops the drawable's animation.
      *
@@ -270,9 +1165,16 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @see #isRunning()
      */
     public void stop() {
-        mRingPathStart.end();
-        mRingPathEnd.end();
-        mStarted = false;
+        if (mSegments != null) {
+            RingFrameClock.getInstance().remove(this);
+            mSegments.stop();
+            return;
+        }
+
+        leaveRenderThread();
+        RingFrameClock.getInstance().remove(this);
+        flushPendingProgress(mTimeSource.now());
+        mRing.stop();
     }
 
     /**
@@ -284,7 +1186,10 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
      * @see #stop()
      */
     public boolean isRunning() {
-        return mRingPathStart.isRunning();
+        if (mSegments != null) {
+            return mSegments.isRunning() && mDurationScale != 0;
+        }
+        return mRing.isRunning() && mDurationScale != 0;
     }
 
     @Override
@@ -292,119 +1197,72 @@ public final class UnifiedCircularProgressDrawable extends Drawable implements A
         super.onBoundsChange(bounds);
 
         fBounds.set(bounds);
+        mDrawnBounds.set(0, 0, bounds.width(), bounds.height());
+        updateGeometry();
     }
 
-    private void setupDeterminateAnimators() {
-        reduceAngles();
+    /**
+     * Configuration shared between drawables created from the same constant state.
+     * Ring positions and animations stay per drawable. Setters copy a shared state before
+     * changing it, so a state never changes once it is shared.
+     */
+    static final class RingState extends ConstantState {
+        int mChangingConfigurations;
+        int mAlpha = 0xFF;
+        ColorStateList mTintList;
+        PorterDuff.Mode mTintMode = PorterDuff.Mode.SRC_IN;
+        int mDuration = RingModel.DEFAULT_DURATION;
+        int mMaxFrameRate;
+        int mPowerSaveMaxFrameRate = DEFAULT_POWER_SAVE_FRAME_RATE;
+        boolean mAtlasEnabled;
+        int mMinRetargetInterval;
+        boolean mProgressSmoothing;
+        float mThickness = BORDER_WIDTH;
 
-        if (ringStart < ANGULAR_EPSILON && ringEnd <= mProgress) {
-            setupAnimators(
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringStart),
-                                                Keyframe.ofFloat(1.0f, 0.0f)),
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringEnd),
-                                                Keyframe.ofFloat(1.0f, mProgress)),
-                (long)(mDuration * (mProgress - ringEnd)));
-        } else {
-            float next = (float)Math.ceil(ringEnd);
-            float timeToReset = next - ringStart;
-            float timeFraction = timeToReset / (timeToReset + mProgress);
-
-            if (timeFraction > 0.99f) timeFraction = 0.99f;
-
-            setupAnimators(
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringStart),
-                                                Keyframe.ofFloat(timeFraction, next),
-                                                Keyframe.ofFloat(1.0f, next)),
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringEnd),
-                                                Keyframe.ofFloat(timeFraction, next),
-                                                Keyframe.ofFloat(1.0f, next + mProgress)),
-                (long)(mDuration * (timeToReset + mProgress)));
-        }
-    }
-
-    private void setupIndeterminateAnimators() {
-        reduceAngles();
-
-        if (ringEnd - ringStart <= 0.5f) {
-            float base = ringStart < ANGULAR_EPSILON ? 0 : ringStart;
-
-            setupAnimators(
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringStart),
-                                                Keyframe.ofFloat(0.5f, base + 0.2f),
-                                                Keyframe.ofFloat(0.7f, base + 0.8f),
-                                                Keyframe.ofFloat(1.0f, base + 1.2f)),
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringEnd),
-                                                Keyframe.ofFloat(0.2f, base + 0.65f),
-                                                Keyframe.ofFloat(0.5f, base + 1.05f),
-                                                Keyframe.ofFloat(1.0f, base + 1.25f)),
-                mDuration);
-        } else {
-            float next = (float)Math.ceil(ringEnd);
-            float timeToReset = next - ringStart;
+        // Style, cap, join and anti-aliasing of the ring. Never changed: drawables draw with
+        // a copy of it.
+        final Paint mPaint;
 
-            setupAnimators(
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringStart),
-                                                Keyframe.ofFloat(1.0f, next)),
-                PropertyValuesHolder.ofKeyframe("",
-                                                Keyframe.ofFloat(0.0f, ringEnd),
-                                                Keyframe.ofFloat(1.0f, next + 0.05f)),
-                (long)(mDuration * timeToReset));
+        RingState() {
+            mPaint = createRingPaint(BORDER_WIDTH);
         }
-    }
 
-    private static void cleanUpAnimator(ValueAnimator animator) {
-        if (animator != null) {
-            animator.removeAllListeners();
-            animator.cancel();
+        RingState(RingState orig) {
+            mPaint = orig.mPaint;
+            mChangingConfigurations = orig.mChangingConfigurations;
+            mAlpha = orig.mAlpha;
+            mTintList = orig.mTintList;
+            mTintMode = orig.mTintMode;
+            mDuration = orig.mDuration;
+            mMaxFrameRate = orig.mMaxFrameRate;
+            mPowerSaveMaxFrameRate = orig.mPowerSaveMaxFrameRate;
+            mAtlasEnabled = orig.mAtlasEnabled;
+            mMinRetargetInterval = orig.mMinRetargetInterval;
+            mProgressSmoothing = orig.mProgressSmoothing;
+            mThickness = orig.mThickness;
         }
-    }
-
-    private void setupAnimators(PropertyValuesHolder startValues, PropertyValuesHolder endValues, long duration) {
-        cleanUpAnimator(mRingPathStart);
-        cleanUpAnimator(mRingPathEnd);
 
-        mRingPathStart = ValueAnimator.ofPropertyValuesHolder(startValues);
-        mRingPathStart.setInterpolator(null);
-        mRingPathStart.setDuration(duration);
-        mRingPathStart.addUpdateListener(anim -> ringStart = (float)anim.getAnimatedValue());
-        mRingPathStart.addListener(new AnimatorListenerAdapter() {
-            public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
-
-                if (mIndeterminate && mStarted) {
-                    setupIndeterminateAnimators();
-                    mRingPathStart.start();
-                    mRingPathEnd.start();
-                }
+        boolean hasTint(@Nullable ColorStateList tint, @Nullable PorterDuff.Mode tintMode) {
+            if (mTintMode != tintMode) {
+                return false;
             }
-        });
-
-        mRingPathEnd = ValueAnimator.ofPropertyValuesHolder(endValues);
-        mRingPathEnd.setDuration(duration);
-        mRingPathEnd.setInterpolator(null);
-        mRingPathEnd.addUpdateListener(anim -> ringEnd = (float)anim.getAnimatedValue());
-    }
-
-    private void reduceAngles() {
-        if (ringEnd < ringStart) {
-            ringEnd = ringStart;
+            if (mTintList == tint) {
+                return true;
+            }
+            return mTintList != null && tint != null
+                    && !mTintList.isStateful() && !tint.isStateful()
+                    && mTintList.getDefaultColor() == tint.getDefaultColor();
         }
 
-        if (ringEnd > ringStart + 1) {
-            ringEnd = ringStart + 1;
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new UnifiedCircularProgressDrawable(this);
         }
 
-        if (ringStart >= 1 || ringStart < 0) {
-            double f = Math.floor(ringStart);
-            ringStart = (float)(ringStart - f);
-            ringEnd = (float)(ringEnd - f);
+        @Override
+        public int getChangingConfigurations() {
+            return mChangingConfigurations;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,496 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * <p>
+ * A circular progress indicator rendered on a dedicated thread, for screens where the UI
+ * thread is too busy to animate, e.g. during a large inflation or a database migration.
+ * </p>
+ * <p>
+ * It shows the same ring as {@link UnifiedCircularProgressBar}, with the same transitions
+ * between determinate and indeterminate modes, and is measured the same way. It reads the
+ * bar's XML attributes with the same defaults, except for the segments and the render thread
+ * animation, which it does not support: only the thread producing the frames differs.
+ * Progress can be set from any thread. It is handed over to the render thread through a
+ * lock-free slot, and only the latest value is kept.
+ * </p>
+ * <p>
+ * Like any {@link TextureView}, it requires a hardware accelerated window.
+ * </p>
+ */
+public final class UnifiedCircularProgressTextureView extends TextureView
+        implements TextureView.SurfaceTextureListener {
+    // The drawable has no intrinsic size, like the bar's.
+    private static final int INTRINSIC_SIZE = -1;
+
+    // Read on the render thread, and never changed.
+    private final RingAttributes mAttributes;
+    private volatile long mMin;
+    private volatile long mMax;
+    private volatile long mProgress;
+    private volatile boolean mIndeterminate;
+    private volatile ColorStateList mTintList;
+    private boolean mMirrorForRtl;
+
+    private final ProgressMailbox mMailbox = new ProgressMailbox();
+    private volatile RenderThread mRenderThread;
+
+    public UnifiedCircularProgressTextureView(Context context) {
+        this(context, null);
+    }
+
+    public UnifiedCircularProgressTextureView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public UnifiedCircularProgressTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        final RingAttributes a = RingAttributes.obtain(context, attrs, defStyleAttr, 0);
+        mAttributes = a;
+
+        // Clamped like the bar's setMin, setMax and setProgress.
+        mMin = a.mMin;
+        mMax = Math.max(a.mMin, a.mMax);
+        mProgress = constrain(a.mProgress, mMin, mMax);
+        mIndeterminate = a.mIndeterminate;
+        mMirrorForRtl = a.mMirrorForRtl;
+        mTintList = a.mTintList;
+
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    /**
+     * <p>Indicate whether this progress indicator is in indeterminate mode.</p>
+     *
+     * @return true if the progress indicator is in indeterminate mode
+     */
+    public boolean isIndeterminate() {
+        return mIndeterminate;
+    }
+
+    /**
+     * <p>Change the indeterminate mode. Can be called from any thread.</p>
+     *
+     * @param indeterminate true to enable the indeterminate mode
+     */
+    public synchronized void setIndeterminate(boolean indeterminate) {
+        mIndeterminate = indeterminate;
+        post(indeterminate
+                ? ProgressMailbox.INDETERMINATE : Double.doubleToRawLongBits(getFraction()));
+    }
+
+    /**
+     * @return the current progress, between {@link #getMin()} and {@link #getMax()}
+     */
+    public long getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * Sets the current progress, leaving the indeterminate mode.
+     * Can be called from any thread.
+     *
+     * @param progress the new progress, between {@link #getMin()} and {@link #getMax()}
+     */
+    public synchronized void setProgress(long progress) {
+        progress = constrain(progress, mMin, mMax);
+
+        if (progress == mProgress && !mIndeterminate) {
+            // No change from current.
+            return;
+        }
+        mProgress = progress;
+        mIndeterminate = false;
+        post(Double.doubleToRawLongBits(getFraction()));
+    }
+
+    /**
+     * @return the lower limit of the range
+     */
+    public long getMin() {
+        return mMin;
+    }
+
+    /**
+     * <p>Set the lower limit of the range. Meant to be called from the UI thread.</p>
+     *
+     * @param min the lower limit of the range
+     */
+    public synchronized void setMin(long min) {
+        if (min > mMax) {
+            min = mMax;
+        }
+        if (min == mMin) return;
+
+        mMin = min;
+        if (mProgress < min) {
+            mProgress = min;
+        }
+        if (!mIndeterminate) {
+            post(Double.doubleToRawLongBits(getFraction()));
+        }
+    }
+
+    /**
+     * @return the upper limit of the range
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * <p>Set the upper limit of the range. Meant to be called from the UI thread.</p>
+     *
+     * @param max the upper limit of the range
+     */
+    public synchronized void setMax(long max) {
+        if (max < mMin) {
+            max = mMin;
+        }
+        if (max == mMax) return;
+
+        mMax = max;
+        if (mProgress > max) {
+            mProgress = max;
+        }
+        if (!mIndeterminate) {
+            post(Double.doubleToRawLongBits(getFraction()));
+        }
+    }
+
+    /**
+     * @return the color of the ring
+     */
+    @ColorInt
+    public int getTintColor() {
+        return mTintList.getDefaultColor();
+    }
+
+    /**
+     * <p>Set the color of the ring.</p>
+     *
+     * @param color the color of the ring
+     */
+    public void setTintColor(@ColorInt int color) {
+        mTintList = ColorStateList.valueOf(color);
+        final RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.mHandler.post(renderThread.mTintRunnable);
+        }
+    }
+
+    /**
+     * @return true if the ring is mirrored in right-to-left layouts
+     */
+    public boolean isMirrorForRtl() {
+        return mMirrorForRtl;
+    }
+
+    /**
+     * <p>Mirror the ring in right-to-left layouts, so that it turns counterclockwise.
+     * Default is false.</p>
+     *
+     * @param mirrorForRtl true to mirror the ring in right-to-left layouts
+     */
+    public void setMirrorForRtl(boolean mirrorForRtl) {
+        if (mMirrorForRtl != mirrorForRtl) {
+            mMirrorForRtl = mirrorForRtl;
+            final RenderThread renderThread = mRenderThread;
+            if (renderThread != null) {
+                renderThread.setSize(getWidth(), getHeight());
+            }
+        }
+    }
+
+    private boolean isLayoutRtl() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return getLayoutDirection() == View.LAYOUT_DIRECTION_RTL;
+        } else {
+            // All layouts are LTR before JB MR1.
+            return false;
+        }
+    }
+
+    private static long constrain(long amount, long low, long high) {
+        return amount < low ? low : (amount > high ? high : amount);
+    }
+
+    private double getFraction() {
+        final long min = mMin;
+        final double range = (double)mMax - min;
+        double fraction = range > 0 ? ((double)mProgress - min) / range : 0;
+        return fraction > 0 ? (fraction < 1 ? fraction : 1) : 0;
+    }
+
+    private void post(long value) {
+        final RenderThread renderThread = mRenderThread;
+        if (mMailbox.put(value, renderThread != null)) {
+            renderThread.mHandler.post(renderThread.mApplyRunnable);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final RingAttributes a = mAttributes;
+        int dw = Math.max(a.mMinWidth, Math.min(a.mMaxWidth, INTRINSIC_SIZE));
+        int dh = Math.max(a.mMinHeight, Math.min(a.mMaxHeight, INTRINSIC_SIZE));
+        dw += getPaddingLeft() + getPaddingRight();
+        dh += getPaddingTop() + getPaddingBottom();
+        final int measuredWidth = resolveSizeAndState(dw, widthMeasureSpec, 0);
+        final int measuredHeight = resolveSizeAndState(dh, heightMeasureSpec, 0);
+        setMeasuredDimension(measuredWidth, measuredHeight);
+    }
+
+    @Override
+    public void onRtlPropertiesChanged(int layoutDirection) {
+        super.onRtlPropertiesChanged(layoutDirection);
+        final RenderThread renderThread = mRenderThread;
+        if (renderThread != null && mMirrorForRtl) {
+            renderThread.setSize(getWidth(), getHeight());
+        }
+    }
+
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        final RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.mHandler.post(isVisible
+                    ? renderThread.mResumeRunnable : renderThread.mSuspendRunnable);
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        final RenderThread renderThread = new RenderThread(surface);
+        renderThread.setSize(width, height);
+        // A new surface starts from the current state, unless a newer value is already waiting.
+        // Values stored from now on are posted.
+        mMailbox.putIfEmpty(mIndeterminate
+                ? ProgressMailbox.INDETERMINATE : Double.doubleToRawLongBits(getFraction()));
+        mRenderThread = renderThread;
+        renderThread.mHandler.post(renderThread.mApplyRunnable);
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        final RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.setSize(width, height);
+        }
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        final RenderThread renderThread = mRenderThread;
+        mRenderThread = null;
+        mMailbox.unschedule();
+        // The render thread releases the surface texture once it is done with it.
+        renderThread.release();
+        return false;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    /**
+     * Owns the drawable and the surface. Invalidations of the drawable, by its frame clock
+     * running on this thread or by state changes, mark the surface dirty, and it is redrawn
+     * at most once per frame.
+     */
+    private class RenderThread implements Drawable.Callback {
+        final HandlerThread mThread = new HandlerThread("UnifiedCircularProgress");
+        final Handler mHandler;
+        // Created on the render thread, which is the only one touching it.
+        UnifiedCircularProgressDrawable mDrawable;
+        final Runnable mApplyRunnable = this::applyProgress;
+        final Runnable mTintRunnable = this::applyTint;
+        final Runnable mSuspendRunnable = () -> mDrawable.setAnimationSuspended(true);
+        final Runnable mResumeRunnable = () -> mDrawable.setAnimationSuspended(false);
+
+        private final SurfaceTexture mSurfaceTexture;
+        private Surface mSurface;
+        private int mWidth;
+        private int mHeight;
+        private boolean mMirrored;
+
+        private boolean mDirty;
+        private boolean mFrameScheduled;
+        private FrameSource mFrameSource;
+        private final Runnable mDrawRunnable = this::onFrame;
+
+        RenderThread(SurfaceTexture surfaceTexture) {
+            mSurfaceTexture = surfaceTexture;
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+            mHandler.post(() -> {
+                mSurface = new Surface(mSurfaceTexture);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    mFrameSource = new FrameSource();
+                }
+                mDrawable = createDrawable();
+            });
+        }
+
+        void setSize(int width, int height) {
+            final int paddingLeft = getPaddingLeft();
+            final int paddingTop = getPaddingTop();
+            final int ringWidth = width - paddingLeft - getPaddingRight();
+            final int ringHeight = height - paddingTop - getPaddingBottom();
+            final boolean mirrored = mMirrorForRtl && isLayoutRtl();
+            mHandler.post(() -> {
+                mWidth = width;
+                mHeight = height;
+                mMirrored = mirrored;
+                mDrawable.setBounds(paddingLeft, paddingTop,
+                        paddingLeft + ringWidth, paddingTop + ringHeight);
+                invalidateDrawable(mDrawable);
+            });
+        }
+
+        /**
+         * Creates the drawable the way the bar configures its own, from the same attributes.
+         */
+        private UnifiedCircularProgressDrawable createDrawable() {
+            final RingAttributes a = mAttributes;
+            final UnifiedCircularProgressDrawable d = new UnifiedCircularProgressDrawable();
+            d.setCallback(this);
+            d.setTintList(mTintList);
+            d.setTintMode(a.getDrawableTintMode());
+            d.setAtlasEnabled(a.mSpriteAtlas);
+            d.setMaxFrameRate(a.mMaxFrameRate);
+            d.setMinRetargetInterval(a.mMinRetargetInterval);
+            d.setThickness(a.mThickness);
+            d.setProgressSmoothingEnabled(a.mProgressSmoothing);
+            d.updateFrameRatePolicy(getContext());
+            return d;
+        }
+
+        void applyTint() {
+            mDrawable.setTintList(mTintList);
+        }
+
+        void applyProgress() {
+            final long value = mMailbox.take();
+            if (value == ProgressMailbox.EMPTY) return;
+
+            if (value == ProgressMailbox.INDETERMINATE) {
+                mDrawable.setIndeterminate(true);
+            } else {
+                mDrawable.setProgress((float)Double.longBitsToDouble(value));
+            }
+            mDrawable.start();
+        }
+
+        void release() {
+            mHandler.post(() -> {
+                mDrawable.stop();
+                mDrawable.setCallback(null);
+                if (mFrameSource != null) {
+                    mFrameSource.removeFrameCallback();
+                }
+                mHandler.removeCallbacks(mDrawRunnable);
+                mSurface.release();
+                mSurfaceTexture.release();
+                mThread.quit();
+            });
+        }
+
+        private void drawFrame() {
+            if (mWidth == 0 || mHeight == 0 || !mSurface.isValid()) return;
+
+            final Canvas canvas;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                canvas = mSurface.lockHardwareCanvas();
+            } else {
+                canvas = mSurface.lockCanvas(null);
+            }
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                // The drawable draws at the origin, whatever its bounds.
+                final int saveCount = canvas.save();
+                if (mMirrored) {
+                    canvas.translate(mDrawable.getBounds().right, mDrawable.getBounds().top);
+                    canvas.scale(-1.0f, 1.0f);
+                } else {
+                    canvas.translate(mDrawable.getBounds().left, mDrawable.getBounds().top);
+                }
+                mDrawable.draw(canvas);
+                canvas.restoreToCount(saveCount);
+            } finally {
+                mSurface.unlockCanvasAndPost(canvas);
+            }
+        }
+
+        private void onFrame() {
+            mFrameScheduled = false;
+            if (mDirty) {
+                mDirty = false;
+                drawFrame();
+            }
+        }
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            mDirty = true;
+            if (mFrameScheduled) return;
+            mFrameScheduled = true;
+
+            if (mFrameSource != null) {
+                mFrameSource.postFrameCallback();
+            } else {
+                mHandler.post(mDrawRunnable);
+            }
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+            mHandler.postAtTime(what, who, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+            mHandler.removeCallbacks(what, who);
+        }
+
+        @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+        private class FrameSource implements Choreographer.FrameCallback {
+            private final Choreographer mChoreographer = Choreographer.getInstance();
+
+            void postFrameCallback() {
+                mChoreographer.postFrameCallback(this);
+            }
+
+            void removeFrameCallback() {
+                mChoreographer.removeFrameCallback(this);
+            }
+
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                onFrame();
+            }
+        }
+    }
+}
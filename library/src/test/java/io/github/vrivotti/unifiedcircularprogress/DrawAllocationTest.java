@@ -0,0 +1,160 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Draws many animation frames into a canvas which records nothing, and checks that the
+ * draw path allocates nothing once warmed up, both when stroking the arc and when drawing
+ * from the atlas.
+ *
+ **/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class DrawAllocationTest {
+    private static final int SIZE = 96;
+    private static final long FRAME_TIME = 16;
+    private static final int WARMUP_FRAMES = 500;
+    private static final int FRAME_COUNT = 2000;
+
+    private long mTime;
+    private UnifiedCircularProgressDrawable mDrawable;
+    private final CountingCanvas mCanvas = new CountingCanvas();
+    private com.sun.management.ThreadMXBean mThreadBean;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        mDrawable = new UnifiedCircularProgressDrawable();
+        mDrawable.setBounds(0, 0, SIZE, SIZE);
+        mDrawable.setMetrics(new ProgressMetrics());
+    }
+
+    /**
+     * Advances and draws the given number of frames.
+     */
+    private void drawFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            mTime += FRAME_TIME;
+            mDrawable.advanceTo(mTime);
+            mDrawable.draw(mCanvas);
+        }
+    }
+
+    /**
+     * Draws the given number of frames after a warm up, and returns the bytes allocated by
+     * the drawing thread meanwhile.
+     */
+    private long measureAllocations(int count) {
+        // Warm up for a few cycles: the first frames set up the geometry, the atlas
+        // and the cycle keyframes.
+        drawFrames(WARMUP_FRAMES);
+
+        final long threadId = Thread.currentThread().getId();
+        final long allocated = mThreadBean.getThreadAllocatedBytes(threadId);
+        drawFrames(count);
+        return mThreadBean.getThreadAllocatedBytes(threadId) - allocated;
+    }
+
+    @Test
+    public void indeterminateArcDrawsWithoutAllocating() {
+        mDrawable.setIndeterminate(true);
+        mDrawable.startAt(mTime);
+
+        final long allocated = measureAllocations(FRAME_COUNT);
+
+        assertEquals(0, mCanvas.mBitmapCount);
+        assertTrue("arc not drawn", mCanvas.mArcCount >= FRAME_COUNT);
+        assertEquals("canvas saved", 0, mCanvas.mSaveCount);
+        // A single object per frame would be many times this.
+        assertTrue("allocated " + allocated + " bytes in " + FRAME_COUNT + " frames",
+                allocated < FRAME_COUNT);
+    }
+
+    @Test
+    public void determinateArcDrawsWithoutAllocating() {
+        // Frames are measured while the ring is still growing: the transition to 0.75 takes
+        // 1.5 times as long as all the frames.
+        mDrawable.setDuration(2 * (WARMUP_FRAMES + FRAME_COUNT) * (int)FRAME_TIME);
+        mDrawable.setIndeterminate(false);
+        mDrawable.setProgress(0.75f);
+        mDrawable.startAt(mTime);
+
+        final long allocated = measureAllocations(FRAME_COUNT);
+
+        assertTrue("transition over", mDrawable.isRunning());
+        assertTrue("arc not drawn", mCanvas.mArcCount >= FRAME_COUNT);
+        assertEquals("canvas saved", 0, mCanvas.mSaveCount);
+        assertTrue("allocated " + allocated + " bytes in " + FRAME_COUNT + " frames",
+                allocated < FRAME_COUNT);
+    }
+
+    @Test
+    public void atlasDrawsWithoutAllocating() {
+        mDrawable.setAtlasEnabled(true);
+        mDrawable.setIndeterminate(true);
+        mDrawable.startAt(mTime);
+
+        final long allocated = measureAllocations(FRAME_COUNT);
+
+        assertTrue("atlas not used", mCanvas.mBitmapCount >= FRAME_COUNT);
+        assertEquals("canvas saved", 0, mCanvas.mSaveCount);
+        assertTrue("allocated " + allocated + " bytes in " + FRAME_COUNT + " frames",
+                allocated < FRAME_COUNT);
+    }
+
+    /**
+     * Counts the draw calls and records nothing, so that only the drawable's own
+     * allocations are measured.
+     */
+    private static final class CountingCanvas extends Canvas {
+        int mArcCount;
+        int mBitmapCount;
+        int mSaveCount;
+
+        @Override
+        public boolean isHardwareAccelerated() {
+            return false;
+        }
+
+        @Override
+        public int save() {
+            mSaveCount++;
+            return 1;
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+        }
+
+        @Override
+        public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+                            Paint paint) {
+            mArcCount++;
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+            mBitmapCount++;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Looper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.vrivotti.unifiedcircularprogress.core.RingModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Steps frames on a paused main looper and checks how much work the progress bar spends
+ * per frame: invalidations, animation rebuilds and progress deliveries from other threads.
+ * A change doing more work per frame fails these budgets.
+ *
+ **/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class FrameBudgetTest {
+    static final long FRAME_MILLIS = 16;
+    static final int SIZE = 96;
+
+    private ActivityController<Activity> mController;
+    private FrameLayout mParent;
+    private UnifiedCircularProgressBar mBar;
+    private UnifiedCircularProgressDrawable mDrawable;
+    private RingModel mRing;
+    private final Canvas mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+
+    private long mInvalidations;
+    private long mSetupCount;
+
+    // Drawables only keep a weak reference to their callback.
+    private final Drawable.Callback mCallback = new Drawable.Callback() {
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            mInvalidations++;
+            mBar.invalidateDrawable(who);
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+            mBar.scheduleDrawable(who, what, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+            mBar.unscheduleDrawable(who, what);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mController = Robolectric.buildActivity(Activity.class).setup();
+        mParent = new FrameLayout(mController.get());
+        mBar = new UnifiedCircularProgressBar(mController.get());
+        mDrawable = ReflectionHelpers.getField(mBar, "mDrawable");
+        mRing = ReflectionHelpers.getField(mDrawable, "mRing");
+        mDrawable.setCallback(mCallback);
+        mParent.addView(mBar, new FrameLayout.LayoutParams(SIZE, SIZE));
+        mController.get().setContentView(mParent);
+        stepFrames(1);
+    }
+
+    @After
+    public void tearDown() {
+        mController.pause().stop().destroy();
+    }
+
+    /**
+     * Runs the given number of frames, drawing the bar after each one like the view root does.
+     */
+    private void stepFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            shadowOf(Looper.getMainLooper()).idleFor(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+            if (mBar.isAttachedToWindow() && mBar.getVisibility() == View.VISIBLE) {
+                mBar.draw(mCanvas);
+            }
+        }
+    }
+
+    private void resetCounters() {
+        mInvalidations = 0;
+        mSetupCount = mRing.getSetupCount();
+    }
+
+    private long getRebuilds() {
+        return mRing.getSetupCount() - mSetupCount;
+    }
+
+    @Test
+    public void longIndeterminateRunInvalidatesOncePerFrame() {
+        mBar.setIndeterminate(true);
+        stepFrames(1);
+        resetCounters();
+
+        final int frameCount = (int)(60000 / FRAME_MILLIS);
+        stepFrames(frameCount);
+
+        assertTrue("animation stalled", mInvalidations >= frameCount / 2);
+        assertTrue("invalidations: " + mInvalidations + " in " + frameCount + " frames",
+                mInvalidations <= frameCount);
+        // One rebuild per indeterminate cycle.
+        final long cycles = 60000 / mRing.getDuration() + 1;
+        assertTrue("rebuilds: " + getRebuilds(), getRebuilds() <= cycles);
+    }
+
+    @Test
+    public void rapidOffThreadProgressPostsOncePerFrame() throws InterruptedException {
+        mBar.setMax(100000);
+        stepFrames(1);
+        resetCounters();
+
+        final int updates = 100000;
+        final Thread worker = new Thread(() -> {
+            for (int i = 1; i <= updates; i++) {
+                mBar.setProgress(i);
+            }
+        });
+        worker.start();
+        int frames = 0;
+        while (worker.isAlive()) {
+            stepFrames(1);
+            frames++;
+        }
+        worker.join();
+        stepFrames(60);
+        frames += 60;
+
+        // Each delivery retargets the ring once, so at most one delivery per frame
+        // bounds the rebuilds, whatever the update rate.
+        assertTrue("rebuilds: " + getRebuilds() + " in " + frames + " frames",
+                getRebuilds() <= frames + 1);
+        assertTrue(mInvalidations <= frames + 1);
+        assertEquals(updates, mBar.getProgress());
+    }
+
+    @Test
+    public void cappedSegmentsKeepAnimating() {
+        final ProgressMetrics metrics = new ProgressMetrics();
+        mBar.setMetrics(metrics);
+        mBar.setMaxFrameRate(20);
+        mBar.setSegmentCount(3);
+        mBar.setSegmentIndeterminate(0, true);
+        mBar.setSegmentProgress(1, 0.5f);
+        stepFrames(1);
+        metrics.reset();
+        resetCounters();
+
+        final int frameCount = 120;
+        stepFrames(frameCount);
+
+        // Frames skipped by the cap must not unregister the drawable from the frame clock:
+        // it sees every frame, whether it draws it or skips it, whatever the actual cap.
+        final long frames = metrics.getFramesExpected() + metrics.getFramesSkipped();
+        assertTrue("no frame skipped", metrics.getFramesSkipped() > 0);
+        assertTrue("segments froze", metrics.getFramesExpected() > 0);
+        assertTrue("frames: " + frames, frames >= frameCount - 1);
+        assertTrue(mInvalidations <= metrics.getFramesExpected() + 1);
+    }
+
+    @Test
+    public void hiddenBarDoesNoFrameWork() {
+        mBar.setIndeterminate(true);
+        stepFrames(10);
+
+        for (int i = 0; i < 20; i++) {
+            mBar.setVisibility(View.GONE);
+            resetCounters();
+            stepFrames(10);
+            assertEquals("invalidations while hidden", 0, mInvalidations);
+            assertEquals("rebuilds while hidden", 0, getRebuilds());
+
+            mBar.setVisibility(View.VISIBLE);
+            resetCounters();
+            stepFrames(10);
+            assertTrue("animation not resumed", mInvalidations > 0);
+            assertTrue(mInvalidations <= 10 + 1);
+            // A cycle started on resume, and at most one more.
+            assertTrue(getRebuilds() <= 2);
+        }
+    }
+
+    @Test
+    public void detachedBarDoesNoFrameWork() throws InterruptedException {
+        mBar.setIndeterminate(true);
+        stepFrames(10);
+
+        mParent.removeView(mBar);
+        resetCounters();
+
+        // Progress set from another thread while detached is kept, not posted.
+        final Thread worker = new Thread(() -> mBar.setProgress(40));
+        worker.start();
+        worker.join();
+        stepFrames(120);
+
+        assertEquals("invalidations while detached", 0, mInvalidations);
+        assertEquals("rebuilds while detached", 0, getRebuilds());
+        final ProgressMailbox mailbox = ReflectionHelpers.getField(mBar, "mRefreshMailbox");
+        final AtomicBoolean scheduled = ReflectionHelpers.getField(mailbox, "mScheduled");
+        assertFalse("delivery posted while detached", scheduled.get());
+
+        mParent.addView(mBar, new FrameLayout.LayoutParams(SIZE, SIZE));
+        stepFrames(120);
+
+        assertTrue("animation not resumed", mInvalidations > 0);
+        assertTrue(mInvalidations <= 120 + 1);
+        assertEquals(40, mBar.getProgress());
+    }
+
+    @Test
+    public void detachKeepsTheAnimationPhase() {
+        mBar.setIndeterminate(true);
+        stepFrames(10);
+        final long cycleStartTime = mRing.getCycleStartTime();
+        assertEquals(RingModel.DEFAULT_DURATION, mRing.getDuration());
+
+        // Detaching hides the bar first: the animation must be suspended, not stopped, or
+        // the ring jumps to the end of its transition and restarts on reattach.
+        mParent.removeView(mBar);
+        assertTrue(mBar.isAnimationSuspended());
+        assertTrue("animation stopped", mDrawable.isRunning());
+        stepFrames(50);
+
+        mParent.addView(mBar, new FrameLayout.LayoutParams(SIZE, SIZE));
+        stepFrames(1);
+        assertFalse(mBar.isAnimationSuspended());
+        assertTrue(mBar.isAnimating());
+        // Less than a cycle went by since it started: a restart would have moved it to now.
+        assertEquals("animation restarted", cycleStartTime, mRing.getCycleStartTime());
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.vrivotti.unifiedcircularprogress;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.view.ContextThemeWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import io.github.vrivotti.unifiedcircularprogress.core.RingModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Inflates rows of progress bars, like a list does, and checks that inflating does no
+ * animation work: the ring is set up and the render thread drawable inflated only once
+ * a bar is shown, whether it is determinate or indeterminate.
+ *
+ **/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class InflationTest {
+    private static final int BARS = 100;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new ContextThemeWrapper(RuntimeEnvironment.application,
+                androidx.appcompat.R.style.Theme_AppCompat);
+    }
+
+    private static UnifiedCircularProgressDrawable getDrawable(UnifiedCircularProgressBar bar) {
+        return ReflectionHelpers.getField(bar, "mDrawable");
+    }
+
+    @Test
+    public void inflatingDoesNoAnimationWork() {
+        final UnifiedCircularProgressBar[] bars = new UnifiedCircularProgressBar[BARS];
+        for (int i = 0; i < BARS; i++) {
+            bars[i] = new UnifiedCircularProgressBar(mContext);
+            if (i % 2 == 1) {
+                bars[i].setIndeterminate(true);
+            }
+        }
+
+        final Object state = ReflectionHelpers.getField(getDrawable(bars[0]), "mState");
+        for (UnifiedCircularProgressBar bar : bars) {
+            final UnifiedCircularProgressDrawable drawable = getDrawable(bar);
+            final RingModel ring = ReflectionHelpers.getField(drawable, "mRing");
+            assertEquals("ring set up while inflating", 0, ring.getSetupCount());
+            assertFalse((boolean)ReflectionHelpers.getField(bar, "mRenderThreadDrawableInflated"));
+            // Bars with the default tint share one drawable configuration.
+            assertSame(state, ReflectionHelpers.getField(drawable, "mState"));
+        }
+    }
+
+    @Test
+    public void defaultTintFollowsTheTheme() {
+        final ColorStateList darkTint = new UnifiedCircularProgressBar(mContext).getTintList();
+        assertSame(darkTint, new UnifiedCircularProgressBar(mContext).getTintList());
+
+        // The same theme, restyled: the cached tint must not be reused.
+        mContext.getTheme().applyStyle(androidx.appcompat.R.style.Theme_AppCompat_Light, true);
+        final ColorStateList lightTint = new UnifiedCircularProgressBar(mContext).getTintList();
+        assertNotEquals(darkTint.getDefaultColor(), lightTint.getDefaultColor());
+    }
+}